@@ -0,0 +1,57 @@
+package edu.brown.cs.diad.bench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BenchSample
+{
+
+private Map<String,Integer> word_counts;
+private List<String> word_list;
+
+public BenchSample()
+{
+   word_counts = new HashMap<>();
+   word_list = new ArrayList<>();
+}
+
+
+public void addText(String text)
+{
+   for (String w : text.split("\\s+")) {
+      if (w.isEmpty()) continue;
+      Integer v = word_counts.get(w);
+      if (v == null) {
+         word_list.add(w);
+         v = 0;
+       }
+      word_counts.put(w,v+1);
+    }
+}
+
+
+public String getMostCommon()
+{
+   String best = null;
+   int bestct = 0;
+   for (String w : word_list) {
+      int ct = word_counts.get(w);
+      if (ct > bestct) {
+         best = w;
+         bestct = ct;
+       }
+    }
+   return best.toUpperCase();
+}
+
+
+public static void main(String [] args)
+{
+   BenchSample bs = new BenchSample();
+   for (String s : args) bs.addText(s);
+   System.out.println(bs.getMostCommon());
+}
+
+}
@@ -0,0 +1,122 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DianalysisGraphBench.java                                       */
+/*                                                                              */
+/*      Benchmark for processing FAIT flow graphs                               */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dianalysis;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+
+import edu.brown.cs.diad.dicontrol.DicontrolBench;
+import edu.brown.cs.diad.dicontrol.DicontrolMain;
+import edu.brown.cs.diad.dicore.DiadException;
+import edu.brown.cs.diad.dicore.DiadThread;
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3,time = 2)
+@Measurement(iterations = 5,time = 2)
+@Fork(1)
+public class DianalysisGraphBench implements DianalysisConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private BenchHistory    graph_history;
+private Element         graph_result;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Setup                                                                   */
+/*                                                                              */
+/********************************************************************************/
+
+@Setup public void setup()
+{
+   DicontrolMain ctrl = DicontrolBench.getReplayControl();
+   DianalysisManager mgr = DicontrolBench.getAnalysisManager(ctrl);
+   DiadThread thrd = DicontrolBench.createThread("BenchThread");
+
+   graph_history = new BenchHistory(mgr,thrd);
+   graph_result = DicontrolBench.loadFixture("graph.xml");
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Benchmarks                                                              */
+/*                                                                              */
+/********************************************************************************/
+
+@Benchmark public String outputGraph() throws DiadException
+{
+   try (IvyXmlWriter xw = new IvyXmlWriter()) {
+      graph_history.outputGraph(graph_result,xw);
+      return xw.toString();
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      History that only outputs graphs                                        */
+/*                                                                              */
+/********************************************************************************/
+
+private static class BenchHistory extends DianalysisHistory {
+
+   BenchHistory(DianalysisManager mgr,DiadThread thrd) {
+      super(mgr,null,thrd);
+    }
+
+   @Override protected void process(IvyXmlWriter xw)    { }
+
+}       // end of inner class BenchHistory
+
+
+}       // end of class DianalysisGraphBench
+
+
+
+
+/* end of DianalysisGraphBench.java */
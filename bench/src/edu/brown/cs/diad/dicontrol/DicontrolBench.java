@@ -0,0 +1,209 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolBench.java                                             */
+/*                                                                              */
+/*      Shared setup for the DIAD benchmarks                                    */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Element;
+
+import edu.brown.cs.diad.dianalysis.DianalysisManager;
+import edu.brown.cs.diad.dicore.DiadStack;
+import edu.brown.cs.diad.dicore.DiadStackFrame;
+import edu.brown.cs.diad.dicore.DiadThread;
+import edu.brown.cs.diad.dicore.DiadValue;
+import edu.brown.cs.ivy.xml.IvyXml;
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+public final class DicontrolBench implements DicontrolConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private static DicontrolMain    replay_control = null;
+
+private static final String FIXTURE_VAR = "$FIXTURES";
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+private DicontrolBench()                        { }
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Fixture methods                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+public static File getFixtureDirectory()
+{
+   String dir = System.getProperty("diad.bench.fixtures","bench/fixtures");
+
+   return new File(dir).getAbsoluteFile();
+}
+
+
+public static File getFixtureFile(String name)
+{
+   return new File(getFixtureDirectory(),name);
+}
+
+
+public static String loadFixtureText(String name)
+{
+   File f = getFixtureFile(name);
+   try {
+      String text = new String(Files.readAllBytes(f.toPath()));
+      return text.replace(FIXTURE_VAR,getFixtureDirectory().getPath());
+    }
+   catch (IOException e) {
+      throw new Error("Can't load benchmark fixture " + f,e);
+    }
+}
+
+
+public static Element loadFixture(String name)
+{
+   Element xml = IvyXml.convertStringToXml(loadFixtureText(name));
+   if (xml == null) throw new Error("Bad benchmark fixture " + name);
+
+   return xml;
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Offline control setup                                                   */
+/*                                                                              */
+/********************************************************************************/
+
+public static synchronized DicontrolMain getReplayControl()
+{
+   if (replay_control != null) return replay_control;
+
+   try {
+      File f = File.createTempFile("diadbench",".xml");
+      f.deleteOnExit();
+      try (FileWriter fw = new FileWriter(f)) {
+         fw.write(loadFixtureText("session.xml"));
+       }
+      replay_control = DicontrolMain.setupReplay(f);
+    }
+   catch (IOException e) {
+      throw new Error("Can't set up replay session",e);
+    }
+
+   return replay_control;
+}
+
+
+public static DianalysisManager getAnalysisManager(DicontrolMain ctrl)
+{
+   return ctrl.getAnalysisManager();
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Stand-in thread for code that needs one                                 */
+/*                                                                              */
+/********************************************************************************/
+
+public static DiadThread createThread(String name)
+{
+   return new BenchThread(name);
+}
+
+
+private static final class BenchThread implements DiadThread {
+
+   private String thread_name;
+   private DiadStack thread_stack;
+
+   BenchThread(String name) {
+      thread_name = name;
+      thread_stack = new BenchStack();
+    }
+
+   @Override public String getThreadName()              { return thread_name; }
+   @Override public String getThreadId()                { return thread_name; }
+   @Override public boolean isTerminated()              { return false; }
+   @Override public boolean isStopped()                 { return true; }
+   @Override public boolean isRunning()                 { return false; }
+   @Override public DiadStack getStack()                { return thread_stack; }
+   @Override public boolean isInternal()                { return false; }
+   @Override public String getExceptionType()           { return null; }
+   @Override public DiadValue evaluate(String expr)     { return null; }
+
+   @Override public List<DiadValue> evaluate(List<String> exprs) {
+      List<DiadValue> rslt = new ArrayList<>();
+      for (int i = 0; i < exprs.size(); ++i) rslt.add(null);
+      return rslt;
+    }
+
+   @Override public void outputXml(IvyXmlWriter xw) {
+      xw.begin("THREAD");
+      xw.field("NAME",thread_name);
+      xw.end("THREAD");
+    }
+
+}       // end of inner class BenchThread
+
+
+private static final class BenchStack implements DiadStack {
+
+   @Override public List<DiadStackFrame> getFrames() {
+      return new ArrayList<>();
+    }
+   @Override public DiadStackFrame getUserFrame()       { return null; }
+   @Override public DiadStackFrame getTopFrame()        { return null; }
+   @Override public String getSignature()               { return ""; }
+
+}       // end of inner class BenchStack
+
+
+
+}       // end of class DicontrolBench
+
+
+
+
+/* end of DicontrolBench.java */
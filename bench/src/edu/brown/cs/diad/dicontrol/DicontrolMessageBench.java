@@ -0,0 +1,151 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolMessageBench.java                                      */
+/*                                                                              */
+/*      Benchmarks for building and decoding messages                           */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Element;
+
+import edu.brown.cs.ivy.mint.MintConstants.CommandArgs;
+import edu.brown.cs.ivy.xml.IvyXml;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3,time = 2)
+@Measurement(iterations = 5,time = 2)
+@Fork(1)
+public class DicontrolMessageBench implements DicontrolConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private List<MessageData> message_list;
+private List<String>    reply_list;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Setup                                                                   */
+/*                                                                              */
+/********************************************************************************/
+
+@Setup public void setup()
+{
+   Element xml = DicontrolBench.loadFixture("messages.xml");
+
+   message_list = new ArrayList<>();
+   for (Element me : IvyXml.children(xml,"MESSAGE")) {
+      message_list.add(new MessageData(me));
+    }
+
+   reply_list = new ArrayList<>();
+   for (Element re : IvyXml.children(xml,"REPLY")) {
+      Element cnts = IvyXml.getChild(re,"RESULT");
+      reply_list.add(IvyXml.convertXmlToString(cnts));
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Benchmarks                                                              */
+/*                                                                              */
+/********************************************************************************/
+
+@Benchmark public void buildMessages(Blackhole bh)
+{
+   for (MessageData md : message_list) {
+      bh.consume(DicontrolMonitor.buildMessage(md.getElement(),md.getCommand(),
+            md.getArgs(),md.getContents()));
+    }
+}
+
+
+@Benchmark public void parseReplies(Blackhole bh)
+{
+   for (String r : reply_list) {
+      bh.consume(IvyXml.convertStringToXml(r));
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Message from the fixture                                                */
+/*                                                                              */
+/********************************************************************************/
+
+private static class MessageData {
+
+   private String message_element;
+   private String message_command;
+   private CommandArgs message_args;
+   private String message_contents;
+
+   MessageData(Element xml) {
+      message_element = IvyXml.getAttrString(xml,"ELEMENT");
+      message_command = IvyXml.getAttrString(xml,"DO");
+      message_args = new CommandArgs();
+      for (Element ae : IvyXml.children(xml,"ARG")) {
+         message_args.put(IvyXml.getAttrString(ae,"NAME"),
+               IvyXml.getAttrString(ae,"VALUE"));
+       }
+      message_contents = IvyXml.getTextElement(xml,"CONTENTS");
+    }
+
+   String getElement()                  { return message_element; }
+   String getCommand()                  { return message_command; }
+   CommandArgs getArgs()                { return message_args; }
+   String getContents()                 { return message_contents; }
+
+}       // end of inner class MessageData
+
+
+}       // end of class DicontrolMessageBench
+
+
+
+
+/* end of DicontrolMessageBench.java */
@@ -0,0 +1,109 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DiruntimeValueBench.java                                        */
+/*                                                                              */
+/*      Benchmark for converting debugger values                                */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.diruntime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Element;
+
+import edu.brown.cs.diad.dicontrol.DicontrolBench;
+import edu.brown.cs.ivy.xml.IvyXml;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3,time = 2)
+@Measurement(iterations = 5,time = 2)
+@Fork(1)
+public class DiruntimeValueBench implements DiruntimeConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private DiruntimeThread for_thread;
+private List<Element>   value_list;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Setup                                                                   */
+/*                                                                              */
+/********************************************************************************/
+
+@Setup public void setup()
+{
+   Element xml = DicontrolBench.loadFixture("values.xml");
+
+   // values of primitive, string and array types need no debugger
+   DiruntimeManager mgr = new DiruntimeManager(null);
+   DiruntimeProcess proc = new DiruntimeProcess(mgr,IvyXml.getChild(xml,"PROCESS"));
+   for_thread = new DiruntimeThread(proc,IvyXml.getChild(xml,"THREAD"));
+
+   value_list = new ArrayList<>();
+   for (Element ve : IvyXml.children(xml,"VALUE")) {
+      value_list.add(ve);
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Benchmarks                                                              */
+/*                                                                              */
+/********************************************************************************/
+
+@Benchmark public void getDiadValue(Blackhole bh)
+{
+   for (Element ve : value_list) {
+      DiruntimeValueData vd = new DiruntimeValueData(for_thread,ve,null);
+      bh.consume(vd.getDiadValue());
+    }
+}
+
+
+}       // end of class DiruntimeValueBench
+
+
+
+
+/* end of DiruntimeValueBench.java */
@@ -0,0 +1,141 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DisourceAstBench.java                                           */
+/*                                                                              */
+/*      Benchmark for finding AST nodes for source locations                    */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.disource;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Element;
+
+import edu.brown.cs.diad.dicontrol.DicontrolBench;
+import edu.brown.cs.diad.dicontrol.DicontrolMain;
+import edu.brown.cs.ivy.xml.IvyXml;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3,time = 2)
+@Measurement(iterations = 5,time = 2)
+@Fork(1)
+public class DisourceAstBench implements DisourceConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private DisourceManager source_manager;
+private List<Lookup>    lookup_list;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Setup                                                                   */
+/*                                                                              */
+/********************************************************************************/
+
+@Setup public void setup()
+{
+   DicontrolMain ctrl = DicontrolBench.getReplayControl();
+   source_manager = ctrl.getSourceManager();
+
+   Element xml = DicontrolBench.loadFixture("lookups.xml");
+   lookup_list = new ArrayList<>();
+   for (Element le : IvyXml.children(xml,"LOOKUP")) {
+      lookup_list.add(new Lookup(le));
+    }
+
+   // the first lookup builds the AST; the benchmark measures the lookups
+   for (Lookup lu : lookup_list) {
+      lu.find(source_manager);
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Benchmarks                                                              */
+/*                                                                              */
+/********************************************************************************/
+
+@Benchmark public void getSourceNode(Blackhole bh)
+{
+   for (Lookup lu : lookup_list) {
+      bh.consume(lu.find(source_manager));
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Lookup from the fixture                                                 */
+/*                                                                              */
+/********************************************************************************/
+
+private static class Lookup {
+
+   private String project_name;
+   private File for_file;
+   private int lookup_offset;
+   private int lookup_line;
+
+   Lookup(Element xml) {
+      project_name = IvyXml.getAttrString(xml,"PROJECT");
+      for_file = new File(IvyXml.getAttrString(xml,"FILE"));
+      lookup_offset = IvyXml.getAttrInt(xml,"OFFSET",-1);
+      lookup_line = IvyXml.getAttrInt(xml,"LINE",-1);
+    }
+
+   Object find(DisourceManager mgr) {
+      return mgr.getSourceNode(project_name,for_file,lookup_offset,lookup_line,
+            false,false);
+    }
+
+}       // end of inner class Lookup
+
+
+}       // end of class DisourceAstBench
+
+
+
+
+/* end of DisourceAstBench.java */
@@ -76,7 +76,7 @@ DianalysisAssertionHistory(DianalysisManager fac,DiadSymptom symp,DiadThread thr
 
 @Override protected void process(IvyXmlWriter xw) throws DiadException 
 {
-   getAnalysis().waitForAnalysis();
+   waitForAnalysis();
    
    ASTNode stmt = getSourceStatement();
    AssertionChecker checker = new AssertionChecker();
@@ -92,7 +92,7 @@ DianalysisAssertionHistory(DianalysisManager fac,DiadSymptom symp,DiadThread thr
    String sxml = getXmlForStack();
    if (sxml != null) expr += sxml;
    
-   Element rslt = getAnalysis().sendFaitMessage("FLOWQUERY",args,expr); 
+   Element rslt = sendFaitMessage("FLOWQUERY",args,expr); 
    outputGraph(rslt,xw);  
 }
 
@@ -106,7 +106,7 @@ DianalysisAssertionHistory(DianalysisManager fac,DiadSymptom symp,DiadThread thr
 
 DiadAssertionData getAssertionData()
 {
-   getAnalysis().waitForAnalysis(); 
+   waitForAnalysis(); 
    
    try {
       ASTNode stmt = getSourceStatement();
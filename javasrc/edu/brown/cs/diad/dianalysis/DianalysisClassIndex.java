@@ -0,0 +1,432 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DianalysisClassIndex.java                                       */
+/*                                                                              */
+/*      Shared index from class names to source files                           */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dianalysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.PackageDeclaration;
+import org.w3c.dom.Element;
+
+import edu.brown.cs.diad.dicontrol.DicontrolMain;
+import edu.brown.cs.ivy.file.IvyFile;
+import edu.brown.cs.ivy.file.IvyLog;
+import edu.brown.cs.ivy.jcomp.JcompAst;
+import edu.brown.cs.ivy.xml.IvyXml;
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+class DianalysisClassIndex implements DianalysisConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private DianalysisManager for_analysis;
+private Map<String,File> class_files;
+private NameNode root_node;
+private Map<File,Set<String>> file_classes;
+private Map<File,List<String>> pending_updates;
+private boolean is_valid;
+private Object build_lock;
+private int num_builds;
+private int num_updates;
+private int num_lookups;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DianalysisClassIndex(DianalysisManager anal)
+{
+   for_analysis = anal;
+   class_files = new HashMap<>();
+   root_node = new NameNode();
+   file_classes = new HashMap<>();
+   pending_updates = null;
+   is_valid = false;
+   build_lock = new Object();
+   num_builds = 0;
+   num_updates = 0;
+   num_lookups = 0;
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Lookup methods                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+// find the file defining a class, an inner class, or a member of a class
+
+File findFile(String cls)
+{
+   build();
+
+   String s = normalize(cls);
+   if (s == null) return null;
+
+   File rslt = null;
+   synchronized (this) {
+      ++num_lookups;
+      // walk the name a component at a time, keeping the innermost class
+      NameNode nn = root_node;
+      int idx = 0;
+      while (nn != null && idx < s.length()) {
+         int idx1 = s.indexOf(".",idx);
+         if (idx1 < 0) idx1 = s.length();
+         nn = nn.getChild(s.substring(idx,idx1));
+         if (nn != null && nn.getFile() != null) rslt = nn.getFile();
+         idx = idx1+1;
+       }
+    }
+
+   return rslt;
+}
+
+
+void addFilesForPackage(String pkg,Set<File> rslt)
+{
+   build();
+
+   synchronized (this) {
+      ++num_lookups;
+      NameNode nn = findNode(pkg,false);
+      if (nn == null) return;
+      // members of a package, or of a class for on-demand imports of nested types
+      if (nn.getFile() != null) rslt.add(nn.getFile());
+      for (NameNode cn : nn.getChildren()) {
+         if (cn.getFile() != null) rslt.add(cn.getFile());
+       }
+    }
+}
+
+
+// map a binary or source class name to the name of its enclosing named class
+
+static String normalize(String cls)
+{
+   if (cls == null) return null;
+
+   String s = cls.replace("$",".");
+   int idx = 0;
+   while (idx < s.length()) {
+      int idx1 = s.indexOf(".",idx);
+      if (Character.isDigit(s.charAt(idx))) {
+         if (idx == 0) return null;
+         return s.substring(0,idx-1);
+       }
+      if (idx1 < 0) break;
+      idx = idx1+1;
+    }
+
+   return s;
+}
+
+
+private NameNode findNode(String name,boolean add)
+{
+   NameNode nn = root_node;
+   if (name.isEmpty()) return nn;
+
+   int idx = 0;
+   while (nn != null && idx < name.length()) {
+      int idx1 = name.indexOf(".",idx);
+      if (idx1 < 0) idx1 = name.length();
+      String c = name.substring(idx,idx1);
+      nn = (add ? nn.addChild(c) : nn.getChild(c));
+      idx = idx1+1;
+    }
+
+   return nn;
+}
+
+
+static String getPackage(String cls)
+{
+   int idx = cls.indexOf("$");
+   String s = (idx > 0 ? cls.substring(0,idx) : cls);
+   int idx1 = s.lastIndexOf(".");
+   if (idx1 < 0) return "";
+
+   return s.substring(0,idx1);
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Build the index from the projects                                       */
+/*                                                                              */
+/********************************************************************************/
+
+private void build()
+{
+   synchronized (build_lock) {
+      synchronized (this) {
+         if (is_valid) return;
+         pending_updates = new HashMap<>();
+       }
+
+      DicontrolMain ctrl = for_analysis.getDiadControl();
+      Element r = ctrl.sendBubblesMessage("PROJECTS",null,null);
+      if (!IvyXml.isElement(r,"RESULT")) {
+         IvyLog.logE("DIANALYSIS","Problem getting project information: " +
+               IvyXml.convertXmlToString(r));
+       }
+
+      Map<String,File> files = new HashMap<>();
+      for (Element cxml : for_analysis.openProjects(r,"CLASSES")) {
+         Element clss = IvyXml.getChild(IvyXml.getChild(cxml,"PROJECT"),"CLASSES");
+         for (Element c : IvyXml.children(clss,"TYPE")) {
+            String tnm = IvyXml.getAttrString(c,"NAME");
+            String fnm = IvyXml.getAttrString(c,"SOURCE");
+            if (tnm == null || fnm == null) continue;
+            files.put(tnm,IvyFile.getCanonical(new File(fnm)));
+          }
+       }
+
+      synchronized (this) {
+         class_files.clear();
+         root_node = new NameNode();
+         file_classes.clear();
+         for (Map.Entry<String,File> ent : files.entrySet()) {
+            addClass(ent.getKey(),ent.getValue());
+          }
+         // changes seen while the projects were being queried
+         for (Map.Entry<File,List<String>> ent : pending_updates.entrySet()) {
+            updateFile(ent.getKey(),ent.getValue());
+          }
+         pending_updates = null;
+         ++num_builds;
+         is_valid = true;
+       }
+
+      IvyLog.logD("DIANALYSIS","Built class index with " + files.size() + " classes");
+    }
+}
+
+
+synchronized void invalidate()
+{
+   is_valid = false;
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Incremental update from resource changes                                */
+/*                                                                              */
+/********************************************************************************/
+
+void handleResourceChange(Element delta)
+{
+   String kind = IvyXml.getAttrString(delta,"KIND");
+   String rtyp = IvyXml.getAttrString(delta,"TYPE");
+   Element re = IvyXml.getChild(delta,"RESOURCE");
+
+   if (rtyp == null || !rtyp.equals("FILE")) {
+      // project level changes can add or remove whole source folders
+      if (rtyp != null && rtyp.equals("PROJECT")) invalidate();
+      return;
+    }
+
+   String fp = IvyXml.getAttrString(re,"LOCATION");
+   if (fp == null || !fp.endsWith(".java")) return;
+   File f = IvyFile.getCanonical(new File(fp));
+
+   List<String> clss = null;
+   if (kind == null) kind = "CHANGED";
+   switch (kind) {
+      case "REMOVED" :
+      case "REMOVED_PHANTOM" :
+         break;
+      default :
+         clss = getFileClasses(f);
+         break;
+    }
+
+   synchronized (this) {
+      if (pending_updates != null) pending_updates.put(f,clss);
+      updateFile(f,clss);
+      ++num_updates;
+    }
+}
+
+
+private List<String> getFileClasses(File f)
+{
+   List<String> rslt = new ArrayList<>();
+   try {
+      String src = IvyFile.loadFile(f);
+      CompilationUnit cu = JcompAst.parseSourceFile(src);
+      PackageDeclaration pd = cu.getPackage();
+      String pfx = (pd == null ? "" : pd.getName().getFullyQualifiedName() + ".");
+      for (Object o : cu.types()) {
+         addTypeNames(pfx,(AbstractTypeDeclaration) o,rslt);
+       }
+    }
+   catch (IOException e) {
+      return null;
+    }
+
+   return rslt;
+}
+
+
+private void addTypeNames(String pfx,AbstractTypeDeclaration td,List<String> rslt)
+{
+   String nm = pfx + td.getName().getIdentifier();
+   rslt.add(nm);
+   for (Object o : td.bodyDeclarations()) {
+      if (o instanceof AbstractTypeDeclaration) {
+         addTypeNames(nm + "$",(AbstractTypeDeclaration) o,rslt);
+       }
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Maintain the maps                                                       */
+/*                                                                              */
+/********************************************************************************/
+
+private void addClass(String cls,File f)
+{
+   String s = normalize(cls);
+   if (s == null) return;
+
+   class_files.put(s,f);
+   findNode(s,true).setFile(f);
+   file_classes.computeIfAbsent(f,k -> new HashSet<>()).add(s);
+}
+
+
+private void updateFile(File f,List<String> clss)
+{
+   Set<String> old = file_classes.remove(f);
+   if (old != null) {
+      for (String s : old) {
+         if (f.equals(class_files.get(s))) {
+            class_files.remove(s);
+            NameNode nn = findNode(s,false);
+            if (nn != null) nn.setFile(null);
+          }
+       }
+    }
+
+   if (clss != null) {
+      for (String s : clss) {
+         addClass(s,f);
+       }
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Statistics                                                              */
+/*                                                                              */
+/********************************************************************************/
+
+synchronized void outputXml(IvyXmlWriter xw)
+{
+   xw.begin("CLASSINDEX");
+   xw.field("VALID",is_valid);
+   xw.field("CLASSES",class_files.size());
+   xw.field("FILES",file_classes.size());
+   xw.field("BUILDS",num_builds);
+   xw.field("UPDATES",num_updates);
+   xw.field("LOOKUPS",num_lookups);
+   xw.end("CLASSINDEX");
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Trie of name components                                                 */
+/*                                                                              */
+/********************************************************************************/
+
+private static final class NameNode {
+
+   private Map<String,NameNode> child_nodes;
+   private File for_file;
+
+   NameNode() {
+      child_nodes = null;
+      for_file = null;
+    }
+
+   NameNode getChild(String c) {
+      if (child_nodes == null) return null;
+      return child_nodes.get(c);
+    }
+
+   NameNode addChild(String c) {
+      if (child_nodes == null) child_nodes = new HashMap<>(4);
+      return child_nodes.computeIfAbsent(c,k -> new NameNode());
+    }
+
+   Collection<NameNode> getChildren() {
+      if (child_nodes == null) return Collections.emptyList();
+      return child_nodes.values();
+    }
+
+   File getFile()                       { return for_file; }
+   void setFile(File f)                 { for_file = f; }
+
+}       // end of inner class NameNode
+
+
+
+}       // end of class DianalysisClassIndex
+
+
+
+
+/* end of DianalysisClassIndex.java */
@@ -23,6 +23,7 @@
 package edu.brown.cs.diad.dianalysis;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -94,7 +95,7 @@ DianalysisExceptionHistory(DianalysisManager fac,DiadSymptom symp,DiadThread thr
 
 @Override protected void process(IvyXmlWriter xw) throws DiadException
 {
-   getAnalysis().waitForAnalysis();
+   waitForAnalysis();
    
    String expr = getExceptionCause();
    if (expr == null)
@@ -106,7 +107,7 @@ DianalysisExceptionHistory(DianalysisManager fac,DiadSymptom symp,DiadThread thr
    String sxml = getXmlForStack();
    if (sxml != null) expr += sxml;
    
-   Element rslt = getAnalysis().sendFaitMessage("FLOWQUERY",args,expr);
+   Element rslt = sendFaitMessage("FLOWQUERY",args,expr);
    outputGraph(rslt,xw);
 }
 
@@ -406,10 +407,12 @@ private final class NullPointerChecker extends ExceptionChecker {
 private final class ArrayIndexOutOfBoundsChecker extends ExceptionChecker {
 
 @Override public void endVisit(ArrayAccess aa) {
-   DiadValue bv = evaluate("(" + aa.getArray().toString() + ").length");
+   List<DiadValue> vals = evaluateAll("(" + aa.getArray().toString() + ").length",
+         aa.getIndex().toString());
+   DiadValue bv = vals.get(0);
    if (bv == null) return;
    long bnd = bv.getInt();
-   DiadValue abv = evaluate(aa.getIndex().toString());
+   DiadValue abv = vals.get(1);
    if (abv == null) return;
    long idx = abv.getInt();
    if (idx < 0 || idx >= bnd) useNode(aa,Long.toString(idx),null);
@@ -450,14 +453,21 @@ private final class IndexOutOfBoundsChecker extends ExceptionChecker {
             return;
        }
       
-      DiadValue bv = evaluate("(" + mi.getExpression() + ").size()");
+      List<?> args = mi.arguments();
+      String sizeexpr = "(" + mi.getExpression() + ").size()";
+      List<DiadValue> vals = null;
+      if (args.size() > 0) {
+         vals = evaluateAll(sizeexpr,args.get(0).toString());
+       }
+      else {
+         vals = evaluateAll(sizeexpr);
+       }
+      DiadValue bv = vals.get(0);
       if (bv == null) return;
       long bnd = bv.getInt();
-      List<?> args = mi.arguments();
       long idx = 0;
       if (args.size() > 0) {
-         Expression eidx = (Expression) args.get(0);
-         DiadValue bidx = evaluate(eidx.toString());
+         DiadValue bidx = vals.get(1);
          if (bidx == null && bnd > 0) return;
          if (bidx != null) idx = bidx.getInt();
        }
@@ -662,6 +672,11 @@ private DiadValue evaluate(String expr) {
 }
 
 
+private List<DiadValue> evaluateAll(String ... exprs) {
+   return getThread().evaluate(Arrays.asList(exprs));
+}
+
+
 }       // end of class DianalysisExceptionHistory
 
 
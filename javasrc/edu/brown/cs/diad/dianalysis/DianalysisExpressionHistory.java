@@ -82,7 +82,7 @@ DianalysisExpressionHistory(DianalysisManager fac,DiadSymptom symp,DiadThread th
 
 private Element getHistoryData()
 {
-   getAnalysis().waitForAnalysis();
+   waitForAnalysis();
    
    CommandArgs args = new CommandArgs("QTYPE","EXPRESSION",
          "CURRENT",current_value,
@@ -100,7 +100,7 @@ private Element getHistoryData()
    if (qxml == null) qxml = sxml;
    else if (sxml != null) qxml += sxml; 
    
-   Element rslt = getAnalysis().sendFaitMessage("FLOWQUERY",args,qxml);
+   Element rslt = sendFaitMessage("FLOWQUERY",args,qxml);
    
    return rslt;
 }
@@ -0,0 +1,263 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DianalysisGenerations.java                                      */
+/*                                                                              */
+/*      Track FAIT analysis rounds and the file sets they cover                 */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dianalysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+class DianalysisGenerations implements DianalysisConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private int requested_generation;
+private int running_generation;
+private int completed_generation;
+private boolean round_started;
+private boolean analysis_failed;
+private TreeMap<Integer,CompletableFuture<Boolean>> generation_futures;
+private TreeMap<Integer,Integer> pending_generations;
+private int round_serial;
+private long round_start;
+private int num_rounds;
+private int num_aborts;
+private long total_time;
+private double round_progress;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DianalysisGenerations()
+{
+   requested_generation = 0;
+   running_generation = 0;
+   completed_generation = 0;
+   round_started = false;
+   analysis_failed = false;
+   generation_futures = new TreeMap<>();
+   pending_generations = new TreeMap<>();
+   round_serial = 0;
+   round_start = 0;
+   num_rounds = 0;
+   num_aborts = 0;
+   total_time = 0;
+   round_progress = -1;
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Access methods                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+// each ANALYZE or ADDFILE asks for a new generation; it is pending until acknowledged
+
+synchronized int nextGeneration()
+{
+   ++requested_generation;
+   pending_generations.put(requested_generation,round_serial);
+   
+   return requested_generation;
+}
+
+
+synchronized void noteAcknowledged(int gen)
+{
+   // FAIT accepted new work, so a new round will report on it
+   analysis_failed = false;
+   Integer serial = pending_generations.remove(gen);
+   // a round started after the request was sent includes it or will be aborted
+   if (serial != null && round_started && round_serial > serial) {
+      running_generation = Math.max(running_generation,getAcknowledgedGeneration());
+    }
+}
+
+
+// the request was never sent or FAIT had nothing new to analyze
+
+synchronized void noteAbandoned(int gen)
+{
+   pending_generations.remove(gen);
+}
+
+
+// highest generation such that it and all before it reached FAIT
+
+synchronized int getAcknowledgedGeneration()
+{
+   if (pending_generations.isEmpty()) return requested_generation;
+   
+   return pending_generations.firstKey() - 1;
+}
+
+
+// the generation that already includes everything FAIT has been given
+
+synchronized int getCurrentGeneration()
+{
+   return (round_started ? running_generation : completed_generation);
+}
+
+
+synchronized CompletableFuture<Boolean> getFuture(int gen)
+{
+   if (analysis_failed) return CompletableFuture.completedFuture(false);
+   if (gen <= completed_generation) return CompletableFuture.completedFuture(true);
+
+   return generation_futures.computeIfAbsent(gen,k -> new CompletableFuture<>());
+}
+
+
+synchronized double getProgress()               { return round_progress; }
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Updates from FAIT                                                       */
+/*                                                                              */
+/********************************************************************************/
+
+synchronized void noteStarted()
+{
+   // a round analyzes every file FAIT has acknowledged so far
+   running_generation = getAcknowledgedGeneration();
+   analysis_failed = false;
+   round_started = true;
+   ++round_serial;
+   round_start = System.currentTimeMillis();
+   round_progress = 0;
+}
+
+
+synchronized void noteAborted()
+{
+   ++num_aborts;
+   round_started = false;
+   round_progress = -1;
+}
+
+
+synchronized void noteProgress(double v)
+{
+   round_progress = v;
+}
+
+
+void noteFinished()
+{
+   List<CompletableFuture<Boolean>> done;
+   synchronized (this) {
+      int gen = (round_started ? running_generation : getAcknowledgedGeneration());
+      completed_generation = Math.max(completed_generation,gen);
+      analysis_failed = false;
+      if (round_start > 0) total_time += System.currentTimeMillis() - round_start;
+      ++num_rounds;
+      round_started = false;
+      round_start = 0;
+      round_progress = 1;
+      SortedMap<Integer,CompletableFuture<Boolean>> head =
+         generation_futures.headMap(completed_generation,true);
+      done = new ArrayList<>(head.values());
+      head.clear();
+    }
+
+   // wake only the callers whose files this round covered
+   for (CompletableFuture<Boolean> fut : done) {
+      fut.complete(true);
+    }
+}
+
+
+void noteFailed()
+{
+   List<CompletableFuture<Boolean>> done;
+   synchronized (this) {
+      // fail only the current waiters; the flag is cleared once FAIT recovers
+      analysis_failed = true;
+      done = new ArrayList<>(generation_futures.values());
+      generation_futures.clear();
+    }
+
+   for (CompletableFuture<Boolean> fut : done) {
+      fut.complete(false);
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Statistics                                                              */
+/*                                                                              */
+/********************************************************************************/
+
+synchronized void outputXml(IvyXmlWriter xw)
+{
+   xw.begin("ANALYSIS");
+   xw.field("REQUESTED",requested_generation);
+   xw.field("PENDING",pending_generations.size());
+   xw.field("RUNNING",round_started ? running_generation : 0);
+   xw.field("COMPLETED",completed_generation);
+   xw.field("FAILED",analysis_failed);
+   xw.field("ROUNDS",num_rounds);
+   xw.field("ABORTS",num_aborts);
+   xw.field("TIME",total_time);
+   if (round_started) {
+      xw.field("ELAPSED",System.currentTimeMillis() - round_start);
+      if (round_progress >= 0) xw.field("PROGRESS",round_progress);
+    }
+   int nwait = 0;
+   for (Map.Entry<Integer,CompletableFuture<Boolean>> ent : generation_futures.entrySet()) {
+      nwait += ent.getValue().getNumberOfDependents();
+    }
+   xw.field("WAITING",nwait);
+   xw.end("ANALYSIS");
+}
+
+
+
+}       // end of class DianalysisGenerations
+
+
+
+
+/* end of DianalysisGenerations.java */
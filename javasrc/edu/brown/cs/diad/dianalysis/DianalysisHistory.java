@@ -38,6 +38,7 @@ import org.eclipse.jdt.core.dom.StructuralPropertyDescriptor;
 import org.w3c.dom.Element;
 
 import edu.brown.cs.diad.dicontrol.DicontrolMain;
+import edu.brown.cs.diad.dicore.DiadCancelToken;
 import edu.brown.cs.diad.dicore.DiadException;
 import edu.brown.cs.diad.dicore.DiadLocation;
 import edu.brown.cs.diad.dicore.DiadNodeContext;
@@ -67,6 +68,7 @@ private DiadSymptom for_symptom;
 private DiadThread  for_thread;
 private DiadStackFrame for_frame;
 private DiadNodeContext node_context;
+private DiadCancelToken cancel_token;
 
 
 /********************************************************************************/
@@ -82,6 +84,7 @@ DianalysisHistory(DianalysisManager fac,DiadSymptom symp,DiadThread thrd)
    for_thread = thrd;
    for_frame = for_thread.getStack().getUserFrame();
    node_context = null;
+   cancel_token = null;
 }
 
 
@@ -128,6 +131,34 @@ protected DiadNodeContext getNodeContext()
    return node_context;
 }
 
+void setCancelToken(DiadCancelToken tok)
+{
+   cancel_token = tok;
+}
+
+protected boolean isCancelled()
+{
+   return DiadCancelToken.isCancelled(cancel_token);
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Analysis requests that stop when the candidate is cancelled             */
+/*                                                                              */
+/********************************************************************************/
+
+protected Element sendFaitMessage(String cmd,CommandArgs args,String cnts)
+{
+   return for_analysis.sendFaitMessage(cmd,args,cnts,cancel_token);
+}
+
+protected Boolean waitForAnalysis()
+{
+   return for_analysis.waitForAnalysis(for_thread,cancel_token);
+}
+
 
 /********************************************************************************/
 /*                                                                              */
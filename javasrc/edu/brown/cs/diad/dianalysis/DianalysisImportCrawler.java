@@ -0,0 +1,349 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DianalysisImportCrawler.java                                    */
+/*                                                                              */
+/*      Parallel crawl of the import graph from a set of files                  */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dianalysis;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import edu.brown.cs.ivy.file.IvyLog;
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+class DianalysisImportCrawler implements DianalysisConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private DianalysisClassIndex class_index;
+private DianalysisImportGraph import_graph;
+private ForkJoinPool crawl_pool;
+private int num_crawls;
+private long num_files;
+private long total_time;
+
+private static final int CRAWL_CHUNK = 16;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DianalysisImportCrawler(DianalysisManager anal,DianalysisClassIndex idx,
+      DianalysisImportGraph graph)
+{
+   class_index = idx;
+   import_graph = graph;
+
+   int dflt = Runtime.getRuntime().availableProcessors();
+   int nth = Math.max(1,anal.getDiadControl().getProperty("Diad.crawl.threads",dflt));
+   crawl_pool = new ForkJoinPool(nth);
+
+   num_crawls = 0;
+   num_files = 0;
+   total_time = 0;
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Crawl the files reachable by imports                                    */
+/*                                                                              */
+/********************************************************************************/
+
+void crawl(Set<File> roots,Set<File> rslt)
+{
+   long start = System.currentTimeMillis();
+
+   Set<File> visited = ConcurrentHashMap.newKeySet();
+   Set<String> pkgs = ConcurrentHashMap.newKeySet();
+   List<File> level = new ArrayList<>();
+   for (File f : roots) {
+      if (visited.add(f)) level.add(f);
+    }
+
+   // expand a level at a time so stack depth doesn't follow the import chain
+   while (!level.isEmpty()) {
+      Set<File> next = ConcurrentHashMap.newKeySet();
+      crawl_pool.invoke(new CrawlTask(level,0,level.size(),visited,pkgs,next));
+      level = new ArrayList<>(next);
+    }
+
+   rslt.addAll(visited);
+   if (import_graph != null) import_graph.save();
+
+   long time = System.currentTimeMillis() - start;
+   synchronized (this) {
+      ++num_crawls;
+      num_files += visited.size();
+      total_time += time;
+    }
+   IvyLog.logD("DIANALYSIS","Crawled " + visited.size() + " files in " + time);
+}
+
+
+private Set<File> getFilesForFile(File f,Set<String> pkgs)
+{
+   Set<File> use = new HashSet<>();
+   FileHeader hdr = (import_graph == null ? scanHeader(f) : import_graph.getHeader(f));
+   if (hdr == null) return use;
+
+   // each package only needs to be expanded once per crawl
+   String pnm = hdr.getPackage();
+   if (pnm != null && pkgs.add(pnm)) class_index.addFilesForPackage(pnm,use);
+
+   for (String nm : hdr.getImports()) {
+      if (nm.endsWith(".*")) {
+         String p = nm.substring(0,nm.length()-2);
+         if (pkgs.add(p)) class_index.addFilesForPackage(p,use);
+       }
+      else {
+         File r = class_index.findFile(nm);
+         if (r != null) use.add(r);
+       }
+    }
+
+   return use;
+}
+
+
+// expands files [lo,hi) of one level, splitting in halves so depth stays logarithmic
+
+private final class CrawlTask extends RecursiveAction {
+
+   private List<File> level_files;
+   private int low_index;
+   private int high_index;
+   private Set<File> visited_files;
+   private Set<String> done_packages;
+   private Set<File> next_files;
+
+   CrawlTask(List<File> files,int lo,int hi,Set<File> visited,Set<String> pkgs,
+         Set<File> next) {
+      level_files = files;
+      low_index = lo;
+      high_index = hi;
+      visited_files = visited;
+      done_packages = pkgs;
+      next_files = next;
+    }
+
+   @Override protected void compute() {
+      if (high_index - low_index > CRAWL_CHUNK) {
+         int mid = (low_index + high_index) / 2;
+         invokeAll(new CrawlTask(level_files,low_index,mid,visited_files,
+               done_packages,next_files),
+               new CrawlTask(level_files,mid,high_index,visited_files,
+                     done_packages,next_files));
+         return;
+       }
+      for (int i = low_index; i < high_index; ++i) {
+         for (File f1 : getFilesForFile(level_files.get(i),done_packages)) {
+            if (f1.exists() && visited_files.add(f1)) next_files.add(f1);
+          }
+       }
+    }
+
+}       // end of inner class CrawlTask
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Scan the package and import declarations of a file                      */
+/*                                                                              */
+/********************************************************************************/
+
+// reads only up to the first token that can't be part of the header
+
+static FileHeader scanHeader(File f)
+{
+   try (HeaderScanner scn = new HeaderScanner(new BufferedReader(new FileReader(f)))) {
+      FileHeader hdr = new FileHeader();
+      String tok = scn.nextToken();
+      if ("package".equals(tok)) {
+         hdr.setPackage(scn.readName());
+         tok = scn.nextToken();
+       }
+      while (tok != null) {
+         if (tok.equals("import")) {
+            String nm = scn.readName();
+            if (nm.startsWith("static ")) nm = nm.substring(7);
+            if (!nm.isEmpty()) hdr.addImport(nm);
+          }
+         else if (!tok.equals(";")) break;
+         tok = scn.nextToken();
+       }
+      return hdr;
+    }
+   catch (IOException e) {
+      return null;
+    }
+}
+
+
+static final class FileHeader {
+
+   private String package_name;
+   private List<String> import_names;
+
+   FileHeader() {
+      package_name = null;
+      import_names = new ArrayList<>();
+    }
+
+   String getPackage()                  { return package_name; }
+   List<String> getImports()            { return import_names; }
+
+   void setPackage(String p)            { package_name = p; }
+   void addImport(String nm)            { import_names.add(nm); }
+
+}       // end of inner class FileHeader
+
+
+private static final class HeaderScanner implements AutoCloseable {
+
+   private Reader for_reader;
+   private int peek_char;
+
+   HeaderScanner(Reader r) {
+      for_reader = r;
+      peek_char = -2;
+    }
+
+   // read a possibly static, possibly on-demand name up to its semicolon
+   String readName() throws IOException {
+      StringBuilder buf = new StringBuilder();
+      for ( ; ; ) {
+         String tok = nextToken();
+         if (tok == null || tok.equals(";")) break;
+         if (tok.equals("static") && buf.length() == 0) buf.append("static ");
+         else buf.append(tok);
+       }
+      return buf.toString();
+    }
+
+   String nextToken() throws IOException {
+      int c = skipSpace();
+      if (c < 0) return null;
+      if (Character.isJavaIdentifierStart(c)) {
+         StringBuilder buf = new StringBuilder();
+         buf.append((char) c);
+         for ( ; ; ) {
+            c = read();
+            if (c < 0 || !Character.isJavaIdentifierPart(c)) break;
+            buf.append((char) c);
+          }
+         unread(c);
+         return buf.toString();
+       }
+      return String.valueOf((char) c);
+    }
+
+   private int skipSpace() throws IOException {
+      for ( ; ; ) {
+         int c = read();
+         if (c < 0) return c;
+         if (Character.isWhitespace(c)) continue;
+         if (c != '/') return c;
+         int c1 = read();
+         if (c1 == '/') {
+            while (c1 >= 0 && c1 != '\n') c1 = read();
+          }
+         else if (c1 == '*') {
+            int last = 0;
+            for ( ; ; ) {
+               c1 = read();
+               if (c1 < 0 || (last == '*' && c1 == '/')) break;
+               last = c1;
+             }
+          }
+         else {
+            unread(c1);
+            return c;
+          }
+       }
+    }
+
+   private int read() throws IOException {
+      if (peek_char != -2) {
+         int c = peek_char;
+         peek_char = -2;
+         return c;
+       }
+      return for_reader.read();
+    }
+
+   private void unread(int c) {
+      peek_char = c;
+    }
+
+   @Override public void close() throws IOException {
+      for_reader.close();
+    }
+
+}       // end of inner class HeaderScanner
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Statistics                                                              */
+/*                                                                              */
+/********************************************************************************/
+
+synchronized void outputXml(IvyXmlWriter xw)
+{
+   xw.begin("CRAWLER");
+   xw.field("THREADS",crawl_pool.getParallelism());
+   xw.field("CRAWLS",num_crawls);
+   xw.field("FILES",num_files);
+   xw.field("TIME",total_time);
+   xw.end("CRAWLER");
+}
+
+
+
+}       // end of class DianalysisImportCrawler
+
+
+
+
+/* end of DianalysisImportCrawler.java */
@@ -0,0 +1,297 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DianalysisImportGraph.java                                      */
+/*                                                                              */
+/*      Persistent per-workspace cache of file import headers                   */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dianalysis;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.brown.cs.diad.dianalysis.DianalysisImportCrawler.FileHeader;
+import edu.brown.cs.ivy.file.IvyLog;
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+class DianalysisImportGraph implements DianalysisConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private File graph_file;
+private Map<File,GraphNode> graph_nodes;
+private volatile boolean is_dirty;
+private long load_time;
+private AtomicInteger hit_count;
+private AtomicInteger stale_count;
+private AtomicInteger changed_count;
+
+private static final int GRAPH_MAGIC = 0x44494147;
+private static final int GRAPH_VERSION = 1;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DianalysisImportGraph(File dir,String workspace)
+{
+   String nm = (workspace == null ? "DIAD" : workspace.replaceAll("[^A-Za-z0-9_]","_"));
+   graph_file = new File(dir,"imports_" + nm + ".bin");
+   graph_nodes = new ConcurrentHashMap<>();
+   is_dirty = false;
+   load_time = 0;
+   hit_count = new AtomicInteger();
+   stale_count = new AtomicInteger();
+   changed_count = new AtomicInteger();
+
+   load();
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Access methods                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+// return the stored header if the file is unchanged, otherwise rescan it
+
+FileHeader getHeader(File f)
+{
+   long mtime = f.lastModified();
+   long size = f.length();
+
+   GraphNode gn = graph_nodes.get(f);
+   if (gn != null && gn.isCurrent(mtime,size)) {
+      hit_count.incrementAndGet();
+      return gn.getHeader();
+    }
+
+   FileHeader hdr = DianalysisImportCrawler.scanHeader(f);
+   if (hdr == null) return null;
+
+   GraphNode ngn = new GraphNode(mtime,size,hdr);
+   // the header hash only tells a touched file from one whose imports changed;
+   // staleness itself is decided by modification time and size
+   if (gn != null && gn.getHash() == ngn.getHash()) stale_count.incrementAndGet();
+   else changed_count.incrementAndGet();
+
+   graph_nodes.put(f,ngn);
+   is_dirty = true;
+
+   return hdr;
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Load and save the graph                                                 */
+/*                                                                              */
+/********************************************************************************/
+
+private void load()
+{
+   if (!graph_file.exists()) return;
+
+   long start = System.currentTimeMillis();
+   try (FileChannel fc = FileChannel.open(graph_file.toPath(),StandardOpenOption.READ)) {
+      MappedByteBuffer buf = fc.map(FileChannel.MapMode.READ_ONLY,0,fc.size());
+      if (buf.getInt() != GRAPH_MAGIC || buf.getInt() != GRAPH_VERSION) return;
+      int ct = buf.getInt();
+      for (int i = 0; i < ct; ++i) {
+         File f = new File(readString(buf));
+         long mtime = buf.getLong();
+         long size = buf.getLong();
+         int hash = buf.getInt();
+         FileHeader hdr = new FileHeader();
+         String pkg = readString(buf);
+         if (!pkg.isEmpty()) hdr.setPackage(pkg);
+         int nimp = buf.getInt();
+         for (int j = 0; j < nimp; ++j) {
+            hdr.addImport(readString(buf));
+          }
+         GraphNode gn = new GraphNode(mtime,size,hdr);
+         // the stored header hash guards against a damaged entry
+         if (gn.getHash() != hash) continue;
+         graph_nodes.put(f,gn);
+       }
+    }
+   catch (IOException | BufferUnderflowException e) {
+      IvyLog.logE("DIANALYSIS","Problem loading import graph " + graph_file,e);
+      graph_nodes.clear();
+    }
+
+   load_time = System.currentTimeMillis() - start;
+   IvyLog.logD("DIANALYSIS","Loaded " + graph_nodes.size() + " import nodes in " + load_time);
+}
+
+
+synchronized void save()
+{
+   if (!is_dirty) return;
+   is_dirty = false;
+
+   List<Map.Entry<File,GraphNode>> ents = new ArrayList<>();
+   for (Map.Entry<File,GraphNode> ent : graph_nodes.entrySet()) {
+      if (ent.getKey().exists()) ents.add(ent);
+    }
+
+   // write then rename so a concurrent session never reads a partial file
+   graph_file.getParentFile().mkdirs();
+   // each session writes its own temporary file so concurrent saves can't interleave
+   File tmp = null;
+   try {
+      tmp = File.createTempFile(graph_file.getName(),".tmp",graph_file.getParentFile());
+    }
+   catch (IOException e) {
+      IvyLog.logE("DIANALYSIS","Problem creating temporary import graph",e);
+      return;
+    }
+   try (DataOutputStream dos = new DataOutputStream(
+         new BufferedOutputStream(new FileOutputStream(tmp)))) {
+      dos.writeInt(GRAPH_MAGIC);
+      dos.writeInt(GRAPH_VERSION);
+      dos.writeInt(ents.size());
+      for (Map.Entry<File,GraphNode> ent : ents) {
+         GraphNode gn = ent.getValue();
+         FileHeader hdr = gn.getHeader();
+         writeString(dos,ent.getKey().getPath());
+         dos.writeLong(gn.getModified());
+         dos.writeLong(gn.getSize());
+         dos.writeInt(gn.getHash());
+         writeString(dos,hdr.getPackage());
+         dos.writeInt(hdr.getImports().size());
+         for (String s : hdr.getImports()) {
+            writeString(dos,s);
+          }
+       }
+    }
+   catch (IOException e) {
+      IvyLog.logE("DIANALYSIS","Problem saving import graph " + tmp,e);
+      tmp.delete();
+      return;
+    }
+   if (!tmp.renameTo(graph_file)) tmp.delete();
+}
+
+
+private static String readString(MappedByteBuffer buf)
+{
+   int len = buf.getInt();
+   // a bad length means the file is corrupt; don't allocate for it
+   if (len < 0 || len > buf.remaining()) throw new BufferUnderflowException();
+   byte [] b = new byte[len];
+   buf.get(b);
+
+   return new String(b,StandardCharsets.UTF_8);
+}
+
+
+private static void writeString(DataOutputStream dos,String s) throws IOException
+{
+   byte [] b = (s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8));
+   dos.writeInt(b.length);
+   dos.write(b);
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Statistics                                                              */
+/*                                                                              */
+/********************************************************************************/
+
+void outputXml(IvyXmlWriter xw)
+{
+   xw.begin("IMPORTGRAPH");
+   xw.field("NODES",graph_nodes.size());
+   xw.field("LOADTIME",load_time);
+   xw.field("HITS",hit_count.get());
+   xw.field("STALE",stale_count.get());
+   xw.field("CHANGED",changed_count.get());
+   xw.end("IMPORTGRAPH");
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Stored node                                                             */
+/*                                                                              */
+/********************************************************************************/
+
+private static final class GraphNode {
+
+   private long last_modified;
+   private long file_size;
+   private FileHeader file_header;
+   private int header_hash;             // hash of package and imports, not contents
+
+   GraphNode(long mtime,long size,FileHeader hdr) {
+      last_modified = mtime;
+      file_size = size;
+      file_header = hdr;
+      int h = (hdr.getPackage() == null ? 0 : hdr.getPackage().hashCode());
+      header_hash = h * 31 + hdr.getImports().hashCode();
+    }
+
+   boolean isCurrent(long mtime,long size) {
+      return last_modified == mtime && file_size == size;
+    }
+
+   long getModified()                   { return last_modified; }
+   long getSize()                       { return file_size; }
+   int getHash()                        { return header_hash; }
+   FileHeader getHeader()               { return file_header; }
+
+}       // end of inner class GraphNode
+
+
+
+}       // end of class DianalysisImportGraph
+
+
+
+
+/* end of DianalysisImportGraph.java */
@@ -22,6 +22,9 @@
 
 package edu.brown.cs.diad.dianalysis;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.IfStatement;
@@ -97,7 +100,7 @@ DianalysisLocationHistory(DianalysisManager fac,DiadSymptom symp,DiadThread thrd
 
 private Element getLocationData(String locxml)
 {
-   getAnalysis().waitForAnalysis();
+   waitForAnalysis();
    
    CommandArgs args = new CommandArgs("QTYPE","LOCATION");
    args = addCommandArgs(args);
@@ -108,7 +111,7 @@ private Element getLocationData(String locxml)
       if (qxml == null) qxml = sxml;
       else qxml += sxml;
     }
-   Element rslt = getAnalysis().sendFaitMessage("FLOWQUERY",args,qxml);
+   Element rslt = sendFaitMessage("FLOWQUERY",args,qxml);
    
    return rslt;
 }
@@ -123,7 +126,7 @@ private Element getLocationData(String locxml)
 
 DiadAssertionData getAssertionData()
 {
-   getAnalysis().waitForAnalysis();
+   waitForAnalysis();
    
    try {
       ASTNode stmt = getSourceStatement();
@@ -158,8 +161,12 @@ DiadAssertionData getAssertionData()
                ex2 = exx;
                break;
           }
-         DiadValue v1 = getThread().evaluate(ex1.toString());
-         DiadValue v2 = getThread().evaluate(ex2.toString());
+         if (isCancelled()) return null;
+         List<DiadValue> vals = getThread().evaluate(
+               Arrays.asList(ex1.toString(),ex2.toString()));
+         DiadValue v1 = vals.get(0);
+         DiadValue v2 = vals.get(1);
+         if (v1 == null || v2 == null) return null;
          return new LocationData(ex1,v1.toString(),v2.toString());
        }
     }
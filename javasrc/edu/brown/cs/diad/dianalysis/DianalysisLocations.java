@@ -34,6 +34,8 @@ import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.w3c.dom.Element;
 
+import edu.brown.cs.diad.dicontrol.DicontrolMain;
+import edu.brown.cs.diad.dicore.DiadCancelToken;
 import edu.brown.cs.diad.dicore.DiadException;
 import edu.brown.cs.diad.dicore.DiadLocation;
 import edu.brown.cs.diad.dicore.DiadSymptom;
@@ -59,6 +61,7 @@ class DianalysisLocations implements DianalysisConstants
 private DianalysisManager for_analysis;
 private DiadSymptom for_symptom;
 private DiadThread  for_thread;
+private DiadCancelToken cancel_token;
  
 
 
@@ -68,11 +71,13 @@ private DiadThread  for_thread;
 /*                                                                              */
 /********************************************************************************/
  
-DianalysisLocations(DianalysisManager anal,DiadSymptom sym,DiadThread thrd)
+DianalysisLocations(DianalysisManager anal,DiadSymptom sym,DiadThread thrd,
+      DiadCancelToken tok)
 {
    for_analysis = anal;
    for_symptom = sym;
    for_thread = thrd;
+   cancel_token = tok;
 }
 
 
@@ -93,6 +98,7 @@ Collection<DiadLocation> findInitialLocations()
       IvyLog.logE("DIANALYSIS","No location history for " + for_symptom);
       return null;
     }
+   hq.setCancelToken(cancel_token);
    
    DisourceManager src = for_analysis.getSourceManager();
    Element xml = null;
@@ -104,10 +110,13 @@ Collection<DiadLocation> findInitialLocations()
       IvyLog.logE("DIANALYSIS","Problem finding locations for problem",e);
       return null;
     }
-   if (Thread.currentThread().isInterrupted()) return null;
+   if (DiadCancelToken.isCancelled(cancel_token)) return null;
    
    for (Element nodes : IvyXml.children(xml,"NODES")) {
-      IvyLog.logD("DIANALYSIS","RESULT OF LOCATION QUERY " + IvyXml.convertXmlToString(nodes));
+      if (DicontrolMain.isDebugLogging()) {
+         IvyLog.logD("DIANALYSIS","RESULT OF LOCATION QUERY " + 
+               IvyXml.convertXmlToString(nodes));
+       }
       Map<String,DiadLocation> done = new HashMap<>();
       for (Element n : IvyXml.children(nodes,"NODE")) {
          double p = IvyXml.getAttrDouble(n,"PRIORITY");
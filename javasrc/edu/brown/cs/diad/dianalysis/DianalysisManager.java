@@ -24,21 +24,25 @@ package edu.brown.cs.diad.dianalysis;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
-import org.eclipse.jdt.core.dom.CompilationUnit;
-import org.eclipse.jdt.core.dom.ImportDeclaration;
-import org.eclipse.jdt.core.dom.PackageDeclaration;
 import org.w3c.dom.Element;
 
 import edu.brown.cs.diad.dicontrol.DicontrolMain;
+import edu.brown.cs.diad.dicore.DiadCancelToken;
 import edu.brown.cs.diad.dicore.DiadLocation;
 import edu.brown.cs.diad.dicore.DiadStackFrame;
 import edu.brown.cs.diad.dicore.DiadSymptom;
@@ -48,7 +52,6 @@ import edu.brown.cs.diad.dicore.DiadConstants.DiadAnalysisState;
 import edu.brown.cs.diad.disource.DisourceManager;
 import edu.brown.cs.ivy.file.IvyFile;
 import edu.brown.cs.ivy.file.IvyLog;
-import edu.brown.cs.ivy.jcomp.JcompAst;
 import edu.brown.cs.ivy.mint.MintConstants.CommandArgs;
 import edu.brown.cs.ivy.xml.IvyXml;
 import edu.brown.cs.ivy.xml.IvyXmlWriter;
@@ -64,10 +67,20 @@ public class DianalysisManager implements DianalysisConstants
 /********************************************************************************/
 
 private DicontrolMain   diad_control;
-private Set<File>       loaded_files;
+private Map<File,Integer> loaded_files;
+private Map<DiadThread,Integer> thread_generations;
+private Map<DiadThread,Set<File>> thread_files;
+private DianalysisGenerations analysis_generations;
+private long            analysis_timeout;
+private int             start_generation;
 private boolean         done_allfiles;
 private DiadAnalysisState analysis_state;
 private String          session_id;
+private DianalysisClassIndex class_index;
+private DianalysisImportCrawler import_crawler;
+private DianalysisImportGraph import_graph;
+
+private static final int ANALYSIS_TIMEOUT = 600;
 
 
 
@@ -80,11 +93,24 @@ private String          session_id;
 public DianalysisManager(DicontrolMain ctrl)
 {
    diad_control = ctrl;
-   loaded_files = new HashSet<>();
+   loaded_files = new HashMap<>();
+   thread_generations = new WeakHashMap<>();
+   thread_files = new WeakHashMap<>();
+   analysis_generations = new DianalysisGenerations();
+   // seconds; 0 waits without limit
+   analysis_timeout = ctrl.getProperty("Diad.analysis.timeout",ANALYSIS_TIMEOUT) * 1000L;
+   start_generation = 0;
    
    done_allfiles = false;
    analysis_state = DiadAnalysisState.NONE;
    session_id = null;
+   class_index = new DianalysisClassIndex(this);
+   import_graph = null;
+   String gr = ctrl.getProperty("Diad.cache.imports");
+   if (gr == null || Boolean.parseBoolean(gr)) {
+      import_graph = new DianalysisImportGraph(ctrl.getCacheDirectory(),ctrl.getMintId());
+    }
+   import_crawler = new DianalysisImportCrawler(this,class_index,import_graph);
    
    Random r = new Random();
    String sid = "DIAD_" + r.nextInt(10000000);
@@ -121,22 +147,45 @@ DisourceManager getSourceManager()
 /*                                                                              */
 /********************************************************************************/
 
-public void addFiles(DiadAnalysisFileMode mode,Collection<File> files,DiadThread thrd)
+public int addFiles(DiadAnalysisFileMode mode,Collection<File> files,DiadThread thrd)
+{
+   return addFiles(mode,files,thrd,null);
+}
+
+
+// returns the analysis generation that includes the files
+
+public int addFiles(DiadAnalysisFileMode mode,Collection<File> files,DiadThread thrd,
+      DiadCancelToken tok)
 { 
    Set<File> use = new HashSet<>();
    
    IvyLog.logD("DIANALYSIS","Add files for " + thrd.getThreadName() + " " + mode);
    
-   Set<File> add = getInitialFileSet(mode,thrd);
+   Set<File> add = getInitialFileSet(mode,thrd,tok);
+   if (DiadCancelToken.isCancelled(tok)) return 0;
    if (files != null) use.addAll(files);
    if (add != null) use.addAll(add);
    
+   return loadFiles(use,thrd,tok);
+}
+
+
+// only files not already given to FAIT are sent
+
+public int loadFiles(Collection<File> use,DiadThread thrd,DiadCancelToken tok)
+{
    Set<File> nset = new HashSet<>();
-   for (File f : use) {
-      File f1 = IvyFile.getCanonical(f);
-      if (!f1.exists()) continue;
-      if (!loaded_files.contains(f1)) {
-         nset.add(f1);
+   Set<File> all = new HashSet<>();
+   int gen = start_generation;
+   synchronized (this) {
+      for (File f : use) {
+         File f1 = IvyFile.getCanonical(f);
+         if (!f1.exists()) continue;
+         all.add(f1);
+         Integer g = loaded_files.get(f1);
+         if (g == null) nset.add(f1);
+         else gen = Math.max(gen,g);
        }
     }
    
@@ -149,23 +198,80 @@ public void addFiles(DiadAnalysisFileMode mode,Collection<File> files,DiadThread
       ++ct;
     }
    if (ct > 0) {
-      loaded_files.addAll(nset);
+      // taken before sending so a round FAIT starts for these files covers them
+      int ngen = analysis_generations.nextGeneration();
+      synchronized (this) {
+         for (File f : nset) {
+            loaded_files.put(f,ngen);
+          }
+       }
       String cnts = buf.toString();
-      Element xw = sendFaitMessage("ADDFILE",null,cnts);
-      if (IvyXml.isElement(xw,"RESULT")) {
-	 if (IvyXml.getAttrBool(xw,"ADDED")) {
-            analysis_state = DiadAnalysisState.PENDING;
-	  }
+      Element xw = sendFaitMessage("ADDFILE",null,cnts,tok);
+      if (!IvyXml.isElement(xw,"RESULT")) {
+         // never sent or not accepted; FAIT doesn't have these files
+         synchronized (this) {
+            for (File f : nset) {
+               loaded_files.remove(f);
+             }
+          }
+         if (!DiadCancelToken.isCancelled(tok)) {
+            IvyLog.logE("DIANALYSIS","Files not added to FAIT for " + thrd.getThreadName());
+          }
+         analysis_generations.noteAbandoned(ngen);
+         ngen = 0;
+       }
+      else if (IvyXml.getAttrBool(xw,"ADDED")) {
+         analysis_generations.noteAcknowledged(ngen);
+         synchronized (this) {
+            if (analysis_state == DiadAnalysisState.READY) {
+               analysis_state = DiadAnalysisState.PENDING;
+             }
+          }
        }
+      else {
+         // nothing new for FAIT to analyze; don't wait on a round that won't come
+         analysis_generations.noteAbandoned(ngen);
+         ngen = analysis_generations.getCurrentGeneration();
+         synchronized (this) {
+            for (File f : nset) {
+               loaded_files.put(f,ngen);
+             }
+          }
+       }
+      gen = Math.max(gen,ngen);
     }
    else {
-      IvyLog.logD("DIANALYSIS","No files to add for " + thrd.getThreadName() + " " +
-            mode);
+      IvyLog.logD("DIANALYSIS","No files to add for " + thrd.getThreadName());
     }
+   
+   if (thrd != null) {
+      synchronized (this) {
+         Integer tgen = thread_generations.get(thrd);
+         if (tgen == null || tgen < gen) thread_generations.put(thrd,gen);
+         Set<File> tfiles = thread_files.computeIfAbsent(thrd,k -> new HashSet<>());
+         for (File f : all) {
+            if (loaded_files.containsKey(f)) tfiles.add(f);
+          }
+       }
+    }
+   
+   return gen;
 }
 
 
-private Set<File> getInitialFileSet(DiadAnalysisFileMode mode,DiadThread thrd)
+// the files given to FAIT for a thread's analysis
+
+public synchronized Set<File> getAnalysisFiles(DiadThread thrd)
+{
+   Set<File> rslt = thread_files.get(thrd);
+   if (rslt == null) return new HashSet<>();
+   
+   return new HashSet<>(rslt);
+}
+
+
+private Set<File> getInitialFileSet(DiadAnalysisFileMode mode,DiadThread thrd,
+      DiadCancelToken tok)
 {
    Set<File> add = null;
    
@@ -180,7 +286,7 @@ private Set<File> getInitialFileSet(DiadAnalysisFileMode mode,DiadThread thrd)
          add = findComputedFiles(thrd);
          break;
       case FAIT_FILES :
-         add = findFaitFiles(thrd);
+         add = findFaitFiles(thrd,tok);
          break;
       case STACK_FILES :
          add = findStackFiles(thrd);
@@ -201,7 +307,14 @@ private Set<File> getInitialFileSet(DiadAnalysisFileMode mode,DiadThread thrd)
 
 public Collection<DiadLocation> findInitialLocations(DiadSymptom symp,DiadThread thrd)
 {
-   DianalysisLocations locs = new DianalysisLocations(this,symp,thrd);
+   return findInitialLocations(symp,thrd,null);
+}
+
+
+public Collection<DiadLocation> findInitialLocations(DiadSymptom symp,DiadThread thrd,
+      DiadCancelToken tok)
+{
+   DianalysisLocations locs = new DianalysisLocations(this,symp,thrd,tok);
    
    return locs.findInitialLocations();
 }
@@ -216,6 +329,7 @@ private void startAnalysis()
 {
    if (analysis_state == DiadAnalysisState.NONE) {
       analysis_state = DiadAnalysisState.PENDING;
+      start_generation = analysis_generations.nextGeneration();
       CommandArgs aargs = new CommandArgs("REPORT","FULL_STATS",
             "ID",session_id);
       int nth = diad_control.getProperty("Diad.fait.threads",4); 
@@ -223,9 +337,11 @@ private void startAnalysis()
       Element arslt = sendFaitMessage("ANALYZE",aargs,null);
       if (!IvyXml.isElement(arslt,"RESULT")) {
          analysis_state = DiadAnalysisState.FAIL;
+         analysis_generations.noteFailed();
          IvyLog.logE("DIANALYSIS","Fait analysis failed " + 
                IvyXml.convertXmlToString(arslt));
        }
+      else analysis_generations.noteAcknowledged(start_generation);
     }
 }
 
@@ -238,60 +354,123 @@ private void startAnalysis()
 
 
 Element sendFaitMessage(String cmd,CommandArgs args,String cnts)
+{
+   return sendFaitMessage(cmd,args,cnts,null);
+}
+
+
+Element sendFaitMessage(String cmd,CommandArgs args,String cnts,DiadCancelToken tok)
 {
    if (session_id != null) {
       if (args == null) args = new CommandArgs();
       if (args.get("SID") == null) args.put("SID",session_id);
     }
    
-   Element rslt = diad_control.sendFaitMessage(cmd,args,cnts);
+   Element rslt = diad_control.sendFaitMessage(cmd,args,cnts,tok);
    
    return rslt;
 }
 
 
 
-public synchronized void handleAnalysis(Element xml)
+public void handleAnalysis(Element xml)
 {
-   IvyLog.logD("DIANALYSIS","Analysis received: " + IvyXml.convertXmlToString(xml));
+   if (DicontrolMain.isDebugLogging()) {
+      IvyLog.logD("DIANALYSIS","Analysis received: " + IvyXml.convertXmlToString(xml));
+    }
    
    String id = IvyXml.getAttrString(xml,"ID");
    if (session_id == null || !session_id.equals(id)) return;
    
    boolean started = IvyXml.getAttrBool(xml,"STARTED");
    boolean aborted = IvyXml.getAttrBool(xml,"ABORTED");
+   double prog = IvyXml.getAttrDouble(xml,"PROGRESS",-1);
    
-   if (started || aborted) {
-      analysis_state = DiadAnalysisState.PENDING;
+   if (aborted) {
+      setAnalysisState(DiadAnalysisState.PENDING);
+      analysis_generations.noteAborted();
+    }
+   else if (started) {
+      setAnalysisState(DiadAnalysisState.PENDING);
+      analysis_generations.noteStarted();
+    }
+   else if (prog >= 0 && prog < 1) {
+      analysis_generations.noteProgress(prog);
     }
    else {
-      analysis_state = DiadAnalysisState.READY;
+      setAnalysisState(DiadAnalysisState.READY);
+      analysis_generations.noteFinished();
+    }
+}
+
+
+private synchronized void setAnalysisState(DiadAnalysisState st)
+{
+   analysis_state = st;
+}
+
+
+public double getAnalysisProgress()
+{
+   return analysis_generations.getProgress();
+}
+
+
+
+public Boolean waitForAnalysis()
+{
+   return waitForAnalysis(null,null);
+}
+
+
+public Boolean waitForAnalysis(DiadThread thrd,DiadCancelToken tok)
+{
+   int gen;
+   synchronized (this) {
+      Integer tgen = (thrd == null ? null : thread_generations.get(thrd));
+      if (tgen != null) gen = tgen;
+      else gen = analysis_generations.getAcknowledgedGeneration();
     }
    
-   notifyAll();
+   return waitForAnalysis(gen,tok,analysis_timeout);
 }
 
 
+public Boolean waitForAnalysis(int gen,DiadCancelToken tok)
+{
+   return waitForAnalysis(gen,tok,analysis_timeout);
+}
+
 
+// wait for the round that covers generation gen; null if cancelled
 
-public synchronized Boolean waitForAnalysis()
+public Boolean waitForAnalysis(int gen,DiadCancelToken tok,long timeout)
 {
-   for ( ; ; ) {
-      switch (analysis_state) {
-         case NONE :
-         case FAIL : 
-            return false;
-         case PENDING :
-            break;
-         case READY :
-            return true;
-       }
-      try {
-         wait(10000);
-       }
-      catch (InterruptedException e) {
-         return null;
-       }
+   synchronized (this) {
+      if (analysis_state == DiadAnalysisState.NONE) return false;
+    }
+   
+   CompletableFuture<Boolean> base = analysis_generations.getFuture(gen);
+   if (base.isDone()) return base.join();
+   
+   // cancelling a caller's copy must not cancel the shared generation
+   CompletableFuture<Boolean> fut = base.thenApply(v -> v);
+   if (tok != null) tok.track(fut);
+   
+   try {
+      if (timeout > 0) return fut.get(timeout,TimeUnit.MILLISECONDS);
+      return fut.get();
+    }
+   catch (CancellationException | InterruptedException e) {
+      return null;
+    }
+   catch (ExecutionException e) {
+      return false;
+    }
+   catch (TimeoutException e) {
+      IvyLog.logE("DIANALYSIS","Analysis generation " + gen + " not ready after " + timeout);
+      fut.cancel(false);
+      return false;
     }
 }
 
@@ -346,7 +525,7 @@ private Set<File> findComputedFiles(DiadThread thrd)
 
 
 
-private Set<File> findFaitFiles(DiadThread thrd) throws RuntimeException
+private Set<File> findFaitFiles(DiadThread thrd,DiadCancelToken tok) throws RuntimeException
 {
    Set<File> base = findAllSourceFiles();
    if (base == null || base.size() < 40) return base;
@@ -365,13 +544,13 @@ private Set<File> findFaitFiles(DiadThread thrd) throws RuntimeException
        }
     }
    
-   waitForAnalysis();
+   if (waitForAnalysis(thrd,tok) == null) return null;
    
    IvyXmlWriter xw = new IvyXmlWriter();
    for (String s : mthds) {
       xw.textElement("METHOD",s);
     }
-   Element clsxml = sendFaitMessage("FILEQUERY",null,xw.toString());
+   Element clsxml = sendFaitMessage("FILEQUERY",null,xw.toString(),tok);
    xw.close();
    Set<String> clsset = new HashSet<>();
    for (Element celt : IvyXml.children(clsxml,"CLASS")) {
@@ -388,56 +567,26 @@ private File findFilesForClasses(Set<String> clsset,Set<File> rslt)
 {
    IvyLog.logD("DIANALYSIS","FIND FILES FOR CLASSES " + clsset);
    
-   Element r = diad_control.sendBubblesMessage("PROJECTS",null,null);
-   if (!IvyXml.isElement(r,"RESULT")) {
-      IvyLog.logE("DIANALYSIS","Problem getting project information: " + IvyXml.convertXmlToString(r));
-    }
-   
    File dir = null;
    String pkg = null;
    for (String s : clsset) {
-      int idx = s.lastIndexOf(".");
-      if (idx > 0) {
-         String p = s.substring(0,idx);
-         if (pkg == null) pkg = p;
-         else if (!pkg.equals(p)) {
-            pkg = null;
-            break;
-          }
-       }
-    }
-   
-   Map<String,String> classmap = new HashMap<>();
-   for (Element pe : IvyXml.children(r,"PROJECT")) {
-      String pnm = IvyXml.getAttrString(pe,"NAME");
-      CommandArgs args = new CommandArgs("CLASSES",true,
-            "PROJECT",pnm);
-      Element cxml = diad_control.sendBubblesMessage("OPENPROJECT",args,null);
-      Element clss = IvyXml.getChild(IvyXml.getChild(cxml,"PROJECT"),"CLASSES");
-      
-      for (Element c : IvyXml.children(clss,"TYPE")) {
-         String tnm = IvyXml.getAttrString(c,"NAME");
-         tnm = tnm.replace("$",".");
-         String fnm  = IvyXml.getAttrString(c,"SOURCE");
-         if (tnm != null && fnm != null) classmap.put(tnm,fnm);
-         int idx = tnm.lastIndexOf(".");
-         if (idx > 0 && dir == null) {
-            String p = tnm.substring(0,idx);
-            if (pkg != null && pkg.equals(p)) {
-               File f = new File(fnm);
-               dir = f.getParentFile();
-             }
-          }
+      String p = DianalysisClassIndex.getPackage(s);
+      if (p.isEmpty()) continue;
+      if (pkg == null) pkg = p;
+      else if (!pkg.equals(p)) {
+         pkg = null;
+         break;
        }
     }
    
    for (String s : clsset) {
-      s = s.replace("$",".");
-      String fnm = classmap.get(s);
-      if (fnm != null) rslt.add(new File(fnm));
+      File f = class_index.findFile(s);
+      if (f != null) {
+         rslt.add(f);
+         if (dir == null && pkg != null) dir = f.getParentFile();
+       }
       else {
-         if (!isAnonymousClass(s))
-            IvyLog.logE("DIANALYSIS","Class " + s + " not found for FILEADD");
+         IvyLog.logE("DIANALYSIS","Class " + s + " not found for FILEADD");
        }
     }
    
@@ -445,103 +594,12 @@ private File findFilesForClasses(Set<String> clsset,Set<File> rslt)
 }
 
 
-private boolean isAnonymousClass(String s)
-{
-   int idx = s.lastIndexOf(".");
-   if (idx > 0 && idx < s.length()-1) {
-      char c = s.charAt(idx+1);
-      if (Character.isDigit(c)) return true;
-    }
-   return false;
-}
-
-
 
 private void findFilesForUnits(Set<File> roots,Set<File> rslt)
 {
-   Queue<File> todo = new ArrayDeque<>(roots);
-   
    IvyLog.logD("DIANALYSIS","FIND FILES FOR UNITS " + roots);
    
-   Element r = diad_control.sendBubblesMessage("PROJECTS",null,null);
-   if (!IvyXml.isElement(r,"RESULT")) {
-      IvyLog.logE("DIANALYSIS","Problem getting project information: " + IvyXml.convertXmlToString(r));
-    }
-   
-   Map<String,String> classmap = new HashMap<>();
-   for (Element pe : IvyXml.children(r,"PROJECT")) {
-      String pnm = IvyXml.getAttrString(pe,"NAME");
-      CommandArgs args = new CommandArgs("CLASSES",true,
-            "PROJECT",pnm);
-      Element cxml = diad_control.sendBubblesMessage("OPENPROJECT",args,null);
-      Element clss = IvyXml.getChild(IvyXml.getChild(cxml,"PROJECT"),"CLASSES");
-      
-      for (Element c : IvyXml.children(clss,"TYPE")) {
-         String tnm = IvyXml.getAttrString(c,"NAME");
-         String fnm  = IvyXml.getAttrString(c,"SOURCE");
-         if (tnm != null && fnm != null) classmap.put(tnm,fnm);
-       }
-    }
-   
-   while (!todo.isEmpty()) {
-      File work = todo.remove();
-      if (rslt.add(work)) {
-         Set<String> nf = getFilesForFile(work,classmap);
-         for (String fnm : nf) {
-            File f1 = new File(fnm);
-            if (f1.exists() && !rslt.contains(f1)) todo.add(f1);
-          }
-       }
-    }
-}
-
-
-
-private Set<String> getFilesForFile(File f,Map<String,String> classmap)
-{
-   Set<String> use = new HashSet<>();
-   try {
-      String src = IvyFile.loadFile(f);
-      CompilationUnit cu = JcompAst.parseSourceFile(src);
-      PackageDeclaration pd = cu.getPackage();
-      if (pd != null) {
-         addAllFilesForPackage(pd.getName().getFullyQualifiedName(),classmap,use);
-       }
-      for (Object o : cu.imports()) {
-         ImportDeclaration id = (ImportDeclaration) o;
-         String nm = id.getName().getFullyQualifiedName();
-         int nln = nm.length();
-         if (id.isOnDemand()) {
-            addAllFilesForPackage(nm,classmap,use);
-          }
-         else {
-            for (int i = nln; i > 0; i = nm.lastIndexOf(".",i-1)) {
-               String s1 = nm.substring(0,i);
-               String r = classmap.get(s1);
-               if (r != null) {
-                  use.add(r);
-                  break;
-                }
-             }
-          }
-       }
-    }
-   catch (IOException e) { }
-   
-   return use;
-}
-
-
-
-private void addAllFilesForPackage(String pkg,Map<String,String> classmap,Set<String> use)
-{
-   int nln = pkg.length();
-   for (String s : classmap.keySet()) {
-      if (s.startsWith(pkg)) {
-         int idx = s.lastIndexOf(".");
-         if (idx == nln) use.add(classmap.get(s));
-       }
-    }
+   import_crawler.crawl(roots,rslt);
 }
 
 
@@ -555,9 +613,8 @@ private Set<File> findAllSourceFiles()
     }
    
    Set<File> allfiles = new HashSet<>();
-   for (Element pe : IvyXml.children(r,"PROJECT")) {
-      String pnm = IvyXml.getAttrString(pe,"NAME");
-      allfiles.addAll(getProjectSourceFiles(pnm));
+   for (Element pxml : openProjects(r,"FILES")) {
+      allfiles.addAll(getProjectSourceFiles(pxml));
     }
    
    return allfiles;
@@ -566,14 +623,9 @@ private Set<File> findAllSourceFiles()
 
 
 
-private Set<File> getProjectSourceFiles(String proj)
+private Set<File> getProjectSourceFiles(Element pxml)
 {
-   IvyLog.logD("DIANALYSIS","Get project source files " + proj);
-   
    Set<File> rslt = new HashSet<>();
-   CommandArgs cargs = new CommandArgs("FILES",true,
-         "PROJECT",proj);
-   Element pxml = diad_control.sendBubblesMessage("OPENPROJECT",cargs,null);
    Element p1 = IvyXml.getChild(IvyXml.getChild(pxml,"PROJECT"),"FILES");
    
    for (Element fe : IvyXml.children(p1,"FILE")) {
@@ -597,6 +649,55 @@ private Set<File> getProjectSourceFiles(String proj)
 
 
 
+/********************************************************************************/
+/*                                                                              */
+/*      Handle changes to the projects                                          */
+/*                                                                              */
+/********************************************************************************/
+
+public void handleResourceChange(Element delta)
+{
+   class_index.handleResourceChange(delta);
+}
+
+
+public void outputXml(IvyXmlWriter xw)
+{
+   analysis_generations.outputXml(xw);
+   class_index.outputXml(xw);
+   import_crawler.outputXml(xw);
+   if (import_graph != null) import_graph.outputXml(xw);
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Query all projects concurrently                                         */
+/*                                                                              */
+/********************************************************************************/
+
+List<Element> openProjects(Element projs,String what)
+{
+   List<CompletableFuture<Element>> waits = new ArrayList<>();
+   for (Element pe : IvyXml.children(projs,"PROJECT")) {
+      String pnm = IvyXml.getAttrString(pe,"NAME");
+      IvyLog.logD("DIANALYSIS","Get project " + what + " for " + pnm);
+      CommandArgs args = new CommandArgs(what,true,"PROJECT",pnm);
+      waits.add(diad_control.sendBubblesMessageAsync("OPENPROJECT",args,null));
+    }
+   
+   List<Element> rslt = new ArrayList<>();
+   for (CompletableFuture<Element> w : waits) {
+      Element pxml = diad_control.waitForReply(w);
+      if (pxml != null) rslt.add(pxml);
+    }
+   
+   return rslt;
+}
+
+
+
 
 }       // end of class DianalysisFactory
 
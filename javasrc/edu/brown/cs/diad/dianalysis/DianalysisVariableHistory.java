@@ -24,6 +24,7 @@ package edu.brown.cs.diad.dianalysis;
 
 import org.w3c.dom.Element;
 
+import edu.brown.cs.diad.dicontrol.DicontrolMain;
 import edu.brown.cs.diad.dicore.DiadException;
 import edu.brown.cs.diad.dicore.DiadStackFrame;
 import edu.brown.cs.diad.dicore.DiadSymptom;
@@ -87,7 +88,7 @@ DianalysisVariableHistory(DianalysisManager anal,DiadSymptom symp,DiadThread thr
 
 private Element getVarData()
 {
-   getAnalysis().waitForAnalysis();
+   waitForAnalysis();
    
    IvyLog.logD("DIANALYSIS","START VAR Query: " + variable_name + 
          " " + current_value + " " +
@@ -100,8 +101,10 @@ private Element getVarData()
          "LINE",frm.getLineNumber(),
          "TOKEN",variable_name,
          "METHOD",method);
-   Element rslt = getAnalysis().sendFaitMessage("VARQUERY",args,null);
-   IvyLog.logD("DIANALYSIS","VAR Data: " + IvyXml.convertXmlToString(rslt));
+   Element rslt = sendFaitMessage("VARQUERY",args,null);
+   if (DicontrolMain.isDebugLogging()) {
+      IvyLog.logD("DIANALYSIS","VAR Data: " + IvyXml.convertXmlToString(rslt));
+    }
    Element vset = IvyXml.getChild(rslt,"VALUESET");
    
 // Element refelt = IvyXml.getChild(vset,"REFERENCE");
@@ -140,7 +143,7 @@ private Element getHistoryData(Element vdata) throws DiadException
    String qxml = buf.toString();
    String sxml = getXmlForStack();
    if (sxml != null) qxml += sxml;
-   Element rslt = getAnalysis().sendFaitMessage("FLOWQUERY",args,qxml);
+   Element rslt = sendFaitMessage("FLOWQUERY",args,qxml);
    
    return rslt;
 }
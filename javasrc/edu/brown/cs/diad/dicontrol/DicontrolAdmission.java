@@ -0,0 +1,308 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolAdmission.java                                         */
+/*                                                                              */
+/*      Admit candidates within a memory budget                                 */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import edu.brown.cs.diad.dicore.DiadConstants.DiadCandidateState;
+import edu.brown.cs.ivy.file.IvyLog;
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+class DicontrolAdmission implements DicontrolConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private DicontrolMain   diad_control;
+private long            memory_budget;
+private long            defer_limit;
+private ScheduledExecutorService retry_timer;
+private List<MemoryPoolMXBean> heap_pools;
+private List<DicontrolCandidate> live_candidates;
+private PriorityQueue<DeferredCandidate> deferred_candidates;
+private long            defer_counter;
+private int             num_deferred;
+private int             num_shed;
+
+private static final double HEAP_LIMIT = 0.9;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DicontrolAdmission(DicontrolMain ctrl)
+{
+   diad_control = ctrl;
+   long max = Runtime.getRuntime().maxMemory();
+   int mb = ctrl.getProperty("Diad.candidate.budget",0);
+   memory_budget = (mb > 0 ? mb * 1024L * 1024L : max / 4);
+   heap_pools = new ArrayList<>();
+   for (MemoryPoolMXBean mp : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (mp.getType() == MemoryType.HEAP && mp.isCollectionUsageThresholdSupported()) {
+         heap_pools.add(mp);
+       }
+    }
+
+   live_candidates = new ArrayList<>();
+   deferred_candidates = new PriorityQueue<>();
+   defer_counter = 0;
+   num_deferred = 0;
+   num_shed = 0;
+
+   // nothing else may change while candidates sit at breakpoints, so check
+   // periodically; after the limit a deferred candidate starts regardless
+   defer_limit = Math.max(0,ctrl.getProperty("Diad.candidate.defer.limit",60000));
+   long retry = Math.max(1000,ctrl.getProperty("Diad.candidate.retry",5000));
+   retry_timer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r,"DIAD Admission Retry");
+      t.setDaemon(true);
+      return t;
+    });
+   retry_timer.scheduleWithFixedDelay(() -> diad_control.startDeferred(),
+         retry,retry,TimeUnit.MILLISECONDS);
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Admission methods                                                       */
+/*                                                                              */
+/********************************************************************************/
+
+// returns true if the candidate can start now
+
+synchronized boolean admit(DicontrolCandidate dc)
+{
+   boolean exc = dc.getThread().getExceptionType() != null;
+   if (isOverBudget()) shedCandidates(exc);
+
+   if (isOverBudget() && !live_candidates.isEmpty()) {
+      IvyLog.logI("DICONTROL","Deferring candidate " + dc.getId() + " over budget " +
+            getLiveSize() + "/" + memory_budget);
+      deferred_candidates.add(new DeferredCandidate(dc,exc,++defer_counter));
+      ++num_deferred;
+      dc.setDeferred(true);
+      return false;
+    }
+
+   live_candidates.add(dc);
+   return true;
+}
+
+
+// returns deferred candidates that can now be started
+
+synchronized List<DicontrolCandidate> remove(DicontrolCandidate dc)
+{
+   live_candidates.remove(dc);
+   for (Iterator<DeferredCandidate> it = deferred_candidates.iterator(); it.hasNext(); ) {
+      if (it.next().getCandidate() == dc) it.remove();
+    }
+
+   return startDeferred();
+}
+
+
+// called when candidates finish or are shed; returns those that can now start
+
+synchronized List<DicontrolCandidate> retry()
+{
+   if (deferred_candidates.isEmpty()) return new ArrayList<>();
+
+   if (isOverBudget()) shedCandidates(deferred_candidates.peek().isException());
+
+   return startDeferred();
+}
+
+
+private List<DicontrolCandidate> startDeferred()
+{
+   List<DicontrolCandidate> rslt = new ArrayList<>();
+
+   // the budget may be used by things other than candidates; don't wait forever
+   long now = System.currentTimeMillis();
+   for (Iterator<DeferredCandidate> it = deferred_candidates.iterator(); it.hasNext(); ) {
+      DeferredCandidate dfc = it.next();
+      if (defer_limit > 0 && now - dfc.getDeferTime() >= defer_limit) {
+         it.remove();
+         IvyLog.logI("DICONTROL","Starting candidate " + dfc.getCandidate().getId() +
+               " after waiting " + (now - dfc.getDeferTime()));
+         startCandidate(dfc.getCandidate(),rslt);
+       }
+    }
+
+   while (!deferred_candidates.isEmpty()) {
+      if (isOverBudget() && !live_candidates.isEmpty()) break;
+      startCandidate(deferred_candidates.poll().getCandidate(),rslt);
+    }
+
+   return rslt;
+}
+
+
+private void startCandidate(DicontrolCandidate dc,List<DicontrolCandidate> rslt)
+{
+   live_candidates.add(dc);
+   dc.setDeferred(false);
+   rslt.add(dc);
+}
+
+
+// candidates that finished without a result keep little worth holding
+
+private void shedCandidates(boolean exc)
+{
+   for (DicontrolCandidate dc : live_candidates) {
+      if (!isOverBudget()) break;
+      if (dc.isReleased()) continue;
+      boolean dcexc = dc.getThread().getExceptionType() != null;
+      if (dcexc && !exc) continue;
+      if (!isFailed(dc.getState())) continue;
+      IvyLog.logD("DICONTROL","Shed candidate " + dc.getId());
+      dc.release();
+      ++num_shed;
+    }
+}
+
+
+private static boolean isFailed(DiadCandidateState st)
+{
+   switch (st) {
+      case NO_SYMPTOM :
+      case NO_STACK :
+      case NO_ANALYSIS :
+      case NO_LOCATIONS :
+      case NO_START_FRAME :
+      case INTERUPTED :
+         return true;
+      default :
+         return false;
+    }
+}
+
+
+private boolean isOverBudget()
+{
+   if (getLiveSize() > memory_budget) return true;
+
+   // use what was live after the last collection, not garbage awaiting one
+   long used = 0;
+   for (MemoryPoolMXBean mp : heap_pools) {
+      MemoryUsage mu = mp.getCollectionUsage();
+      if (mu != null) used += mu.getUsed();
+    }
+   return used > Runtime.getRuntime().maxMemory() * HEAP_LIMIT;
+}
+
+
+private long getLiveSize()
+{
+   long tot = 0;
+   for (DicontrolCandidate dc : live_candidates) {
+      tot += dc.getSizeEstimate();
+    }
+   return tot;
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Statistics                                                              */
+/*                                                                              */
+/********************************************************************************/
+
+synchronized void outputXml(IvyXmlWriter xw)
+{
+   xw.begin("ADMISSION");
+   xw.field("BUDGET",memory_budget);
+   xw.field("SIZE",getLiveSize());
+   xw.field("LIVE",live_candidates.size());
+   xw.field("WAITING",deferred_candidates.size());
+   xw.field("DEFERRED",num_deferred);
+   xw.field("SHED",num_shed);
+   xw.end("ADMISSION");
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Deferred candidate: exceptions before breakpoints, newest first         */
+/*                                                                              */
+/********************************************************************************/
+
+private static final class DeferredCandidate implements Comparable<DeferredCandidate> {
+
+   private DicontrolCandidate for_candidate;
+   private boolean is_exception;
+   private long defer_order;
+   private long defer_time;
+
+   DeferredCandidate(DicontrolCandidate dc,boolean exc,long order) {
+      for_candidate = dc;
+      is_exception = exc;
+      defer_order = order;
+      defer_time = System.currentTimeMillis();
+    }
+
+   DicontrolCandidate getCandidate()            { return for_candidate; }
+   boolean isException()                        { return is_exception; }
+   long getDeferTime()                          { return defer_time; }
+
+   @Override public int compareTo(DeferredCandidate d) {
+      if (is_exception != d.is_exception) return (is_exception ? -1 : 1);
+      return Long.compare(d.defer_order,defer_order);
+    }
+
+}       // end of inner class DeferredCandidate
+
+
+}       // end of class DicontrolAdmission
+
+
+
+
+/* end of DicontrolAdmission.java */
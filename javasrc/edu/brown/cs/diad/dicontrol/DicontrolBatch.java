@@ -0,0 +1,365 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolBatch.java                                             */
+/*                                                                              */
+/*      Run a manifest of test launches as parallel sessions                    */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.w3c.dom.Element;
+
+import edu.brown.cs.ivy.exec.IvyExecQuery;
+import edu.brown.cs.ivy.file.IvyFile;
+import edu.brown.cs.ivy.file.IvyLog;
+import edu.brown.cs.ivy.xml.IvyXml;
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+class DicontrolBatch implements DicontrolConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private List<BatchJob>  batch_jobs;
+private int             num_threads;
+private File            output_directory;
+
+private static final long       DEFAULT_JOB_TIME = 60000;
+private static final long       EXTRA_JOB_TIME = 300000;
+private static final long       STOP_TIME = 30000;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DicontrolBatch(DicontrolMain ctrl,File manifest)
+{
+   batch_jobs = new ArrayList<>();
+
+   Element xml = null;
+   try {
+      xml = IvyXml.convertStringToXml(IvyFile.loadFile(manifest));
+    }
+   catch (IOException e) {
+      IvyLog.logE("DICONTROL","Problem reading batch manifest " + manifest,e);
+    }
+
+   num_threads = ctrl.getProperty("Diad.batch.threads",2);
+   num_threads = Math.max(1,IvyXml.getAttrInt(xml,"THREADS",num_threads));
+   String out = IvyXml.getAttrString(xml,"OUTPUT");
+   if (out == null) {
+      output_directory = new File(manifest.getAbsoluteFile().getParentFile(),"diadbatch");
+    }
+   else output_directory = new File(out);
+
+   int idx = 0;
+   for (Element je : IvyXml.children(xml,"JOB")) {
+      batch_jobs.add(new BatchJob(je,++idx));
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Processing methods                                                      */
+/*                                                                              */
+/********************************************************************************/
+
+void process()
+{
+   output_directory.mkdirs();
+   long start = System.currentTimeMillis();
+
+   IvyLog.logI("DICONTROL","Running " + batch_jobs.size() + " batch jobs with " +
+         num_threads + " threads");
+
+   // eclipse can only have a workspace open once, so its jobs run in sequence
+   Map<String,List<BatchJob>> byworkspace = new LinkedHashMap<>();
+   for (BatchJob job : batch_jobs) {
+      byworkspace.computeIfAbsent(job.getWorkspace(),k -> new ArrayList<>()).add(job);
+    }
+
+   ExecutorService pool = Executors.newFixedThreadPool(num_threads);
+   List<Future<?>> waits = new ArrayList<>();
+   for (List<BatchJob> jobs : byworkspace.values()) {
+      waits.add(pool.submit(new WorkspaceTask(jobs)));
+    }
+   for (Future<?> fut : waits) {
+      try {
+         fut.get();
+       }
+      catch (Exception e) {
+         IvyLog.logE("DICONTROL","Problem running batch job",e);
+       }
+    }
+   pool.shutdown();
+
+   outputSummary(System.currentTimeMillis() - start);
+}
+
+
+private void outputSummary(long time)
+{
+   File f = new File(output_directory,"summary.xml");
+   try (IvyXmlWriter xw = new IvyXmlWriter();
+         FileWriter fw = new FileWriter(f)) {
+      xw.begin("BATCH");
+      xw.field("TIME",time);
+      xw.field("THREADS",num_threads);
+      xw.field("JOBS",batch_jobs.size());
+      long total = 0;
+      for (BatchJob job : batch_jobs) {
+         total += job.getTime();
+       }
+      xw.field("JOBTIME",total);
+      for (BatchJob job : batch_jobs) {
+         job.outputXml(xw);
+       }
+      xw.end("BATCH");
+      fw.write(xw.toString());
+    }
+   catch (IOException e) {
+      IvyLog.logE("DICONTROL","Problem writing batch summary " + f,e);
+    }
+
+   IvyLog.logI("DICONTROL","Batch done in " + time + " ms; summary in " + f);
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      The jobs for one workspace, run in order                                */
+/*                                                                              */
+/********************************************************************************/
+
+private static final class WorkspaceTask implements Runnable {
+
+   private List<BatchJob> workspace_jobs;
+
+   WorkspaceTask(List<BatchJob> jobs) {
+      workspace_jobs = jobs;
+    }
+
+   @Override public void run() {
+      for (BatchJob job : workspace_jobs) {
+         job.runJob();
+       }
+    }
+
+}       // end of inner class WorkspaceTask
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      A single job: one DIAD process with its own Mint session                */
+/*                                                                              */
+/********************************************************************************/
+
+private final class BatchJob {
+
+   private int job_index;
+   private String workspace_name;
+   private String mint_id;
+   private String project_name;
+   private String launch_name;
+   private int continue_count;
+   private long job_time;
+   private File job_directory;
+   private String job_status;
+   private int exit_status;
+   private long run_time;
+   private List<Element> job_candidates;
+
+   BatchJob(Element xml,int idx) {
+      job_index = idx;
+      workspace_name = IvyXml.getAttrString(xml,"WORKSPACE");
+      mint_id = "BUBBLES_DIAD_BATCH_" + idx + "_" + workspace_name;
+      project_name = IvyXml.getAttrString(xml,"PROJECT",workspace_name);
+      launch_name = IvyXml.getAttrString(xml,"LAUNCH");
+      continue_count = IvyXml.getAttrInt(xml,"CONTINUE",0);
+      job_time = IvyXml.getAttrLong(xml,"TIME",DEFAULT_JOB_TIME);
+      job_directory = new File(output_directory,"job" + idx);
+      job_status = "PENDING";
+      exit_status = -1;
+      run_time = 0;
+      job_candidates = new ArrayList<>();
+    }
+
+   long getTime()                               { return run_time; }
+   String getWorkspace()                        { return String.valueOf(workspace_name); }
+
+   void runJob() {
+      long start = System.currentTimeMillis();
+      job_directory.mkdirs();
+      File script = new File(job_directory,"script.xml");
+      File stats = new File(job_directory,"stats.xml");
+      File log = new File(job_directory,"diad.log");
+      stats.delete();
+
+      try {
+         writeScript(script,stats);
+         List<String> args = new ArrayList<>();
+         args.add(IvyExecQuery.getJavaPath());
+         args.add("-cp");
+         args.add(System.getProperty("java.class.path"));
+         args.add(DicontrolMain.class.getName());
+         args.add("-f");
+         args.add(script.getPath());
+         args.add("-L");
+         args.add(log.getPath());
+         ProcessBuilder pb = new ProcessBuilder(args);
+         pb.redirectErrorStream(true);
+         pb.redirectOutput(new File(job_directory,"output.txt"));
+         IvyLog.logD("DICONTROL","Start batch job " + job_index + ": " + launch_name);
+         Process p = pb.start();
+         if (p.waitFor(job_time + EXTRA_JOB_TIME,TimeUnit.MILLISECONDS)) {
+            exit_status = p.exitValue();
+            job_status = (exit_status == 0 ? "DONE" : "FAILED");
+          }
+         else {
+            job_status = "TIMEOUT";
+            stopJob(p);
+          }
+       }
+      catch (IOException e) {
+         IvyLog.logE("DICONTROL","Problem running batch job " + job_index,e);
+         job_status = "ERROR";
+       }
+      catch (InterruptedException e) {
+         job_status = "INTERRUPTED";
+       }
+
+      run_time = System.currentTimeMillis() - start;
+      loadResults(stats);
+      IvyLog.logI("DICONTROL","Batch job " + job_index + " " + launch_name + " " +
+            job_status + " in " + run_time);
+    }
+
+   // let DIAD's shutdown hook stop eclipse, then make sure eclipse is gone
+   private void stopJob(Process p) throws InterruptedException {
+      p.destroy();
+      if (!p.waitFor(STOP_TIME,TimeUnit.MILLISECONDS)) p.destroyForcibly();
+
+      DicontrolTransport mt = new DicontrolTransportLive(mint_id);
+      DicontrolReply rply = new DicontrolReply(STOP_TIME);
+      mt.send("<BUBBLES DO='EXIT' />",rply);
+      DicontrolReply.waitForReply(rply.getFuture());
+    }
+
+   private void writeScript(File script,File stats) throws IOException {
+      try (IvyXmlWriter xw = new IvyXmlWriter();
+            FileWriter fw = new FileWriter(script)) {
+         xw.begin("DIAD");
+         xw.field("DO","PING");
+         xw.end("DIAD");
+         xw.begin("DIAD");
+         xw.field("DO","SETUPBUBBLES");
+         xw.field("MINT",mint_id);
+         xw.field("WORKSPACE",workspace_name);
+         xw.end("DIAD");
+         xw.begin("DIAD");
+         xw.field("DO","TEST");
+         xw.field("PROJECT",project_name);
+         xw.field("LAUNCH",launch_name);
+         xw.field("CONTINUE",continue_count);
+         xw.end("DIAD");
+         xw.begin("DIAD");
+         xw.field("DO","DELAY");
+         xw.field("TIME",job_time);
+         xw.end("DIAD");
+         xw.begin("DIAD");
+         xw.field("DO","STATS");
+         xw.field("FILE",stats.getPath());
+         xw.end("DIAD");
+         xw.begin("DIAD");
+         xw.field("DO","EXIT");
+         xw.end("DIAD");
+         fw.write(xw.toString());
+       }
+    }
+
+   private void loadResults(File stats) {
+      if (!stats.exists()) return;
+      try {
+         Element xml = IvyXml.convertStringToXml(IvyFile.loadFile(stats));
+         for (Element ce : IvyXml.children(xml,"CANDIDATE")) {
+            job_candidates.add(ce);
+          }
+       }
+      catch (IOException e) { }
+    }
+
+   void outputXml(IvyXmlWriter xw) {
+      xw.begin("JOB");
+      xw.field("INDEX",job_index);
+      xw.field("WORKSPACE",workspace_name);
+      xw.field("PROJECT",project_name);
+      xw.field("LAUNCH",launch_name);
+      xw.field("CONTINUE",continue_count);
+      xw.field("STATUS",job_status);
+      xw.field("EXIT",exit_status);
+      xw.field("TIME",run_time);
+      for (Element ce : job_candidates) {
+         xw.begin("CANDIDATE");
+         xw.field("ID",IvyXml.getAttrString(ce,"ID"));
+         xw.field("STATE",IvyXml.getAttrString(ce,"STATE"));
+         Element tl = IvyXml.getChild(ce,"TIMELINE");
+         if (tl != null) {
+            xw.field("SEND",IvyXml.getAttrLong(tl,"SEND",0));
+            xw.field("RECV",IvyXml.getAttrLong(tl,"RECV",0));
+          }
+         xw.end("CANDIDATE");
+       }
+      xw.end("JOB");
+    }
+
+}       // end of inner class BatchJob
+
+
+}       // end of class DicontrolBatch
+
+
+
+
+/* end of DicontrolBatch.java */
@@ -0,0 +1,326 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolBubblesCache.java                                      */
+/*                                                                              */
+/*      Cache of replies to read-only Bubbles queries                           */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.w3c.dom.Element;
+
+import edu.brown.cs.ivy.file.IvyLog;
+import edu.brown.cs.ivy.mint.MintConstants.CommandArgs;
+import edu.brown.cs.ivy.xml.IvyXml;
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+class DicontrolBubblesCache implements DicontrolConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private Map<String,CacheEntry> cache_map;
+private AtomicLong      cache_generation;
+private AtomicInteger   hit_count;
+private AtomicInteger   miss_count;
+
+enum QueryKind { PROJECTS, CLASSES, FILES, PATHS, SEARCH };
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DicontrolBubblesCache()
+{
+   cache_map = new ConcurrentHashMap<>();
+   cache_generation = new AtomicLong();
+   hit_count = new AtomicInteger();
+   miss_count = new AtomicInteger();
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Lookup methods                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+QueryKind getQueryKind(String cmd,CommandArgs args)
+{
+   switch (cmd) {
+      case "PROJECTS" :
+         return QueryKind.PROJECTS;
+      case "PATTERNSEARCH" :
+         return QueryKind.SEARCH;
+      case "OPENPROJECT" :
+         if (args == null) return null;
+         QueryKind k = null;
+         int ct = 0;
+         if (isSet(args,"CLASSES")) {
+            k = QueryKind.CLASSES;
+            ++ct;
+          }
+         if (isSet(args,"FILES")) {
+            k = QueryKind.FILES;
+            ++ct;
+          }
+         if (isSet(args,"PATHS")) {
+            k = QueryKind.PATHS;
+            ++ct;
+          }
+         if (ct != 1) return null;
+         return k;
+      default :
+         return null;
+    }
+}
+
+
+String getKey(String cmd,CommandArgs args,String cnts)
+{
+   StringBuffer buf = new StringBuffer();
+   buf.append(cmd);
+   if (args != null) {
+      Map<String,Object> sorted = new TreeMap<>(args);
+      for (Map.Entry<String,Object> ent : sorted.entrySet()) {
+         buf.append(";");
+         buf.append(ent.getKey());
+         buf.append("=");
+         buf.append(ent.getValue());
+       }
+    }
+   if (cnts != null) {
+      buf.append(";");
+      buf.append(cnts);
+    }
+
+   return buf.toString();
+}
+
+
+long getGeneration()
+{
+   return cache_generation.get();
+}
+
+
+Element lookup(String key)
+{
+   CacheEntry ce = cache_map.get(key);
+   if (ce == null) {
+      miss_count.incrementAndGet();
+      return null;
+    }
+
+   hit_count.incrementAndGet();
+
+   // each caller gets its own copy since DOM trees are not safe to share;
+   // copying the tree is much cheaper than parsing the reply again
+   return ce.getCopy();
+}
+
+
+void store(String key,QueryKind kind,CommandArgs args,long gen,Element rslt)
+{
+   if (!IvyXml.isElement(rslt,"RESULT")) return;
+
+   String proj = null;
+   if (args != null && args.get("PROJECT") != null) {
+      proj = args.get("PROJECT").toString();
+    }
+   // called before the caller sees the reply, so the copy can't race with it
+   CacheEntry ce = new CacheEntry(kind,proj,(Element) rslt.cloneNode(true));
+
+   synchronized (this) {
+      // drop results that were computed before an invalidation
+      if (gen != cache_generation.get()) return;
+      cache_map.put(key,ce);
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Invalidation methods                                                    */
+/*                                                                              */
+/********************************************************************************/
+
+void handleResourceChange(Element delta)
+{
+   String kind = IvyXml.getAttrString(delta,"KIND");
+   String rtyp = IvyXml.getAttrString(delta,"TYPE");
+   Element re = IvyXml.getChild(delta,"RESOURCE");
+   String proj = IvyXml.getAttrString(re,"PROJECT");
+
+   if (rtyp == null || !rtyp.equals("FILE")) {
+      invalidate(proj,QueryKind.values());
+      return;
+    }
+
+   if (kind == null) kind = "CHANGED";
+   switch (kind) {
+      case "ADDED" :
+      case "ADDED_PHANTOM" :
+      case "REMOVED" :
+      case "REMOVED_PHANTOM" :
+         invalidate(proj,QueryKind.FILES,QueryKind.CLASSES,QueryKind.SEARCH);
+         break;
+      default :
+         invalidate(proj,QueryKind.CLASSES,QueryKind.SEARCH);
+         break;
+    }
+}
+
+
+void handleEdit(Element xml)
+{
+   invalidate(null,QueryKind.SEARCH);
+}
+
+
+void handleBuildDone(Element xml)
+{
+   String proj = IvyXml.getAttrString(xml,"PROJECT");
+   invalidate(proj,QueryKind.CLASSES,QueryKind.SEARCH);
+}
+
+
+void handleProjectData(Element xml)
+{
+   String proj = IvyXml.getAttrString(xml,"PROJECT");
+   if (proj == null) proj = IvyXml.getAttrString(xml,"NAME");
+   invalidate(proj,QueryKind.values());
+}
+
+
+
+private synchronized void invalidate(String proj,QueryKind ... kinds)
+{
+   cache_generation.incrementAndGet();
+
+   int ct = 0;
+   for (Iterator<CacheEntry> it = cache_map.values().iterator(); it.hasNext(); ) {
+      CacheEntry ce = it.next();
+      if (ce.matches(proj,kinds)) {
+         it.remove();
+         ++ct;
+       }
+    }
+
+   if (ct > 0) {
+      IvyLog.logD("DICONTROL","Invalidated " + ct + " cached Bubbles replies for " +
+            (proj == null ? "*" : proj));
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Statistics                                                              */
+/*                                                                              */
+/********************************************************************************/
+
+void outputXml(IvyXmlWriter xw)
+{
+   xw.begin("BUBBLESCACHE");
+   xw.field("SIZE",cache_map.size());
+   xw.field("HITS",hit_count.get());
+   xw.field("MISSES",miss_count.get());
+   xw.end("BUBBLESCACHE");
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Utility methods                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private static boolean isSet(CommandArgs args,String key)
+{
+   Object v = args.get(key);
+   if (v == null) return false;
+
+   return Boolean.parseBoolean(v.toString());
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Cache entry                                                             */
+/*                                                                              */
+/********************************************************************************/
+
+private static class CacheEntry {
+
+   private QueryKind query_kind;
+   private String for_project;
+   private Element reply_xml;
+
+   CacheEntry(QueryKind kind,String proj,Element xml) {
+      query_kind = kind;
+      for_project = proj;
+      reply_xml = xml;
+    }
+
+   // only this entry reads its tree, one copy at a time
+   synchronized Element getCopy() {
+      return (Element) reply_xml.cloneNode(true);
+    }
+
+   boolean matches(String proj,QueryKind [] kinds) {
+      boolean fnd = false;
+      for (QueryKind k : kinds) {
+         if (k == query_kind) fnd = true;
+       }
+      if (!fnd) return false;
+      // PROJECTS and searches are workspace wide
+      if (proj == null || for_project == null) return true;
+      return proj.equals(for_project);
+    }
+
+}       // end of inner class CacheEntry
+
+
+}       // end of class DicontrolBubblesCache
+
+
+
+
+/* end of DicontrolBubblesCache.java */
@@ -24,18 +24,27 @@ package edu.brown.cs.diad.dicontrol;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import edu.brown.cs.diad.dianalysis.DianalysisManager;
+import edu.brown.cs.diad.dicore.DiadCancelToken;
 import edu.brown.cs.diad.dicore.DiadCandidateCallback;
+import edu.brown.cs.diad.dicore.DiadLocalVariable;
 import edu.brown.cs.diad.dicore.DiadLocation;
 import edu.brown.cs.diad.dicore.DiadStack;
 import edu.brown.cs.diad.dicore.DiadStackFrame;
 import edu.brown.cs.diad.dicore.DiadSymptom;
 import edu.brown.cs.diad.dicore.DiadThread;
 import edu.brown.cs.diad.diexecute.DiexecuteManager;
+import edu.brown.cs.diad.disource.DisourceManager;
 import edu.brown.cs.ivy.file.IvyLog;
 import edu.brown.cs.ivy.swing.SwingEventListenerList;
 import edu.brown.cs.ivy.xml.IvyXmlWriter;
@@ -52,19 +61,35 @@ class DicontrolCandidate implements DicontrolConstants
 
 private DicontrolMain   diad_control;
 private DiadThread      for_thread;
-private DiadStackFrame  for_frame;
+private volatile DiadStackFrame for_frame;
 private DiadCandidateState  candidate_state; 
 private DiadSymptom     candidate_symptom;
-private Collection<DiadLocation> location_set;
-private DiadStackFrame  start_frame;
+private volatile Collection<DiadLocation> location_set;
+private volatile DiadStackFrame start_frame;
 private String          candidate_id;
 private SwingEventListenerList<DiadCandidateCallback> candidate_listeners;
-private CandidateThread candidate_processor;
+private CandidateProcessor candidate_processor;
 private Set<File>       candidate_files;
 private DiadAnalysisFileMode file_mode;
+private volatile long   queue_wait;
+private String          candidate_signature;
+private boolean         use_prefetch;
+private DiadAnalysisFileMode loaded_mode;
+private volatile String frame_inputs;
+private DicontrolTimeline candidate_timeline;
+private volatile long   size_estimate;
+private volatile boolean is_released;
+private volatile boolean is_deferred;
 
 private static AtomicInteger candidate_counter = new AtomicInteger(0);
 
+// rough retained sizes used for admission control
+private static final long BASE_SIZE = 2048;
+private static final long FRAME_SIZE = 512;
+private static final long VARIABLE_SIZE = 256;
+private static final long LOCATION_SIZE = 512;
+private static final long EVENT_SIZE = 96;
+
 
 
 /********************************************************************************/
@@ -82,11 +107,23 @@ DicontrolCandidate(DicontrolMain ctrl,DiadThread thrd)
    location_set = null;
    candidate_listeners = new SwingEventListenerList<>(DiadCandidateCallback.class);
    candidate_processor = null;
-   candidate_id = "DIAD_ " + candidate_counter.incrementAndGet();
+   int idx = candidate_counter.incrementAndGet();
+   candidate_id = "DIAD_ " + idx;
+   candidate_timeline = new DicontrolTimeline(candidate_id,idx);
+   candidate_timeline.noteState(candidate_state);
+   size_estimate = BASE_SIZE;
+   is_released = false;
+   is_deferred = false;
    candidate_files = new HashSet<>();
    start_frame = null;
+   queue_wait = -1;
+   candidate_signature = null;
+   loaded_mode = null;
+   frame_inputs = null;
    file_mode = diad_control.getProperty("Diad.file.mode",
          DiadAnalysisFileMode.FAIT_FILES);
+   String pre = diad_control.getProperty("Diad.candidate.prefetch");
+   use_prefetch = pre == null || Boolean.parseBoolean(pre);
 }
 
 
@@ -100,6 +137,14 @@ DiadThread getThread()                          { return for_thread; }
 DiadCandidateState getState()                   { return candidate_state; }
 DiadSymptom getSymptom()                        { return candidate_symptom; }
 String getId()                                  { return candidate_id; }
+long getQueueWait()                             { return queue_wait; }
+String getSignature()                           { return candidate_signature; }
+DicontrolTimeline getTimeline()                 { return candidate_timeline; }
+long getSizeEstimate()                          { return size_estimate; }
+boolean isReleased()                            { return is_released; }
+boolean isDeferred()                            { return is_deferred; }
+
+void noteQueueWait(long wait)                   { queue_wait = wait; }
 
 void addCandidateListener(DiadCandidateCallback cb)
 {
@@ -123,6 +168,21 @@ void setState(DiadCandidateState st)
    if (st == candidate_state) return;
    
    candidate_state = st;
+   candidate_timeline.noteState(st);
+   updateSizeEstimate();
+   for (DiadCandidateCallback cb : candidate_listeners) {
+      cb.stateChanged();
+    }
+}
+
+
+// admission control is holding the candidate; tell the IDE so it can show that
+
+void setDeferred(boolean fg)
+{
+   if (fg == is_deferred) return;
+   
+   is_deferred = fg;
    for (DiadCandidateCallback cb : candidate_listeners) {
       cb.stateChanged();
     }
@@ -143,10 +203,12 @@ void start()
    switch (candidate_state) {
       case INITIAL :
       case SYMPTOM_FOUND :
+      case ANALYSIS_DONE :
+      case INITIAL_LOCATIONS :
       case EXECUTION_DONE :
       case STARTING_FRAME_FOUND :
-         candidate_processor = new CandidateThread();
-         candidate_processor.start();
+         candidate_processor = new CandidateProcessor();
+         diad_control.getCandidateScheduler().schedule(this,candidate_processor);
          break;
       case NO_SYMPTOM :   
          break;
@@ -158,39 +220,253 @@ void start()
 }
 
 
+// the stack and frame are kept; analysis is reused if files are unchanged
+
 void setSymptom(DiadSymptom symp)
 {
-   // set symptom if possible and restart
+   if (symp == null || symp == candidate_symptom) return;
+   
+   stopProcessing();
+   candidate_symptom = symp;
+   restart(DiadCandidateState.SYMPTOM_FOUND);
 }
 
+
+// only the new files are given to FAIT
+
 void addFiles(Collection<File> files)
 {
-   // add to files, if any new files, restart
+   boolean chng = false;
+   for (File f : files) {
+      if (!candidate_files.contains(f)) chng = true;
+    }
+   if (!chng) return;
+   
+   stopProcessing();
+   candidate_files.addAll(files);
+   restart(DiadCandidateState.SYMPTOM_FOUND);
 }
 
+
 void setFileMode(DiadAnalysisFileMode mode)
 {
+   if (mode == null || mode == file_mode) return;
+   
+   stopProcessing();
    file_mode = mode;
-   // restart analysis
+   loaded_mode = null;
+   restart(DiadCandidateState.SYMPTOM_FOUND);
+}
+
+
+private void restart(DiadCandidateState st)
+{
+   switch (candidate_state) {
+      case DEAD :
+      case NO_STACK :
+         return;
+      default :
+         break;
+    }
+   
+   // results now differ from others with the same signature
+   diad_control.leaveCandidateGroup(this);
+   is_released = false;
+   
+   if (for_frame == null || candidate_symptom == null) st = DiadCandidateState.INITIAL;
+   setState(st);
+   start();
 }
 
 void terminate()
 {
    candidate_state = DiadCandidateState.DEAD;
+   candidate_timeline.noteState(candidate_state);
    stopProcessing();
 }
 
 
-private synchronized void stopProcessing()
+// drop what the candidate holds once it is no longer worth keeping
+
+void release()
 {
-   while (candidate_processor.isAlive()) {
-      candidate_processor.interrupt();
-      try {
-         wait(100);
+   is_released = true;
+   for_frame = null;
+   start_frame = null;
+   location_set = null;
+   frame_inputs = null;
+   for_thread.releaseStack();
+   updateSizeEstimate();
+}
+
+
+private void updateSizeEstimate()
+{
+   long sz = BASE_SIZE;
+   
+   // the stack is only held once the frame has been found
+   if (for_frame != null && !is_released) {
+      DiadStack stk = for_thread.getStack();
+      if (stk != null) {
+         for (DiadStackFrame frm : stk.getFrames()) {
+            sz += FRAME_SIZE;
+            for (String nm : frm.getLocals()) {
+               sz += VARIABLE_SIZE;
+               DiadLocalVariable var = frm.getLocal(nm);
+               String val = (var == null ? null : var.getValue());
+               if (val != null) sz += 2 * val.length();
+             }
+          }
        }
-      catch (InterruptedException e) { }  
     }
-   candidate_processor = null;
+   Collection<DiadLocation> locs = location_set;
+   if (locs != null) sz += locs.size() * LOCATION_SIZE;
+   sz += candidate_timeline.getEventCount() * EVENT_SIZE;
+   
+   size_estimate = sz;
+}
+
+
+// take the results of a candidate with the same signature
+
+void shareFrom(DicontrolCandidate lead)
+{
+   DiadCandidateState st = lead.getState();
+   switch (st) {
+      case INITIAL :
+      case INTERUPTED :
+      case DEAD :
+         return;
+      default :
+         break;
+    }
+   
+   if (for_frame == null) for_frame = for_thread.getStack().getUserFrame();
+   candidate_symptom = lead.candidate_symptom;
+   Collection<DiadLocation> locs = lead.location_set;
+   location_set = (locs == null ? null : new ArrayList<>(locs));
+   start_frame = null;
+   if (st == DiadCandidateState.STARTING_FRAME_FOUND) {
+      start_frame = mapFrame(lead.for_thread.getStack(),lead.start_frame);
+      // different frame layout; find our own starting frame
+      if (start_frame == null) {
+         // leave first so later leader changes don't overwrite our own work
+         diad_control.leaveCandidateGroup(this);
+         setState(DiadCandidateState.INITIAL_LOCATIONS);
+         start();
+         return;
+       }
+    }
+   
+   setState(st);
+}
+
+
+private DiadStackFrame mapFrame(DiadStack lstk,DiadStackFrame lfrm)
+{
+   DiadStack stk = for_thread.getStack();
+   if (lstk == null || lfrm == null || stk == null) return null;
+   
+   List<DiadStackFrame> lfrms = getUserFrames(lstk);
+   List<DiadStackFrame> frms = getUserFrames(stk);
+   int idx = lfrms.indexOf(lfrm);
+   if (idx < 0 || idx >= frms.size()) return null;
+   
+   return frms.get(idx);
+}
+
+
+private static List<DiadStackFrame> getUserFrames(DiadStack stk)
+{
+   List<DiadStackFrame> rslt = new ArrayList<>();
+   for (DiadStackFrame frm : stk.getFrames()) {
+      if (frm.isUserFrame()) rslt.add(frm);
+    }
+   return rslt;
+}
+
+
+// a result from an earlier session with unchanged sources
+
+private boolean useCachedResult()
+{
+   DicontrolResultCache cache = diad_control.getResultCache();
+   String sig = getCacheSignature();
+   if (cache == null || sig == null) return false;
+   
+   DicontrolResultCache.CachedResult cr = cache.lookup(candidate_symptom,sig,file_mode);
+   if (cr == null) return false;
+   DiadStackFrame frm = cr.getStartFrame(getUserFrames(for_thread.getStack()));
+   if (frm == null) return false;
+   
+   candidate_symptom = cr.getSymptom();
+   location_set = cr.getLocations();
+   start_frame = frm;
+   setState(DiadCandidateState.STARTING_FRAME_FOUND);
+   
+   return true;
+}
+
+
+private void saveResult()
+{
+   DicontrolResultCache cache = diad_control.getResultCache();
+   String sig = getCacheSignature();
+   if (cache == null || sig == null) return;
+   
+   Set<File> files = diad_control.getAnalysisManager().getAnalysisFiles(for_thread);
+   cache.store(candidate_symptom,sig,file_mode,files,location_set,
+         getUserFrames(for_thread.getStack()),start_frame);
+}
+
+
+// files added by hand aren't tracked by the cache
+
+private String getCacheSignature()
+{
+   if (candidate_signature == null || !candidate_files.isEmpty()) return null;
+   
+   return candidate_signature;
+}
+
+
+// what the starting frame was computed from
+
+private String getFrameInputs()
+{
+   StringBuffer buf = new StringBuffer();
+   buf.append(candidate_symptom.getSymptomType());
+   buf.append(":");
+   buf.append(candidate_symptom.getSymptomItem());
+   buf.append(":");
+   buf.append(candidate_symptom.getTargetValue());
+   List<String> locs = new ArrayList<>();
+   for (DiadLocation loc : location_set) {
+      locs.add(loc.getFile().getPath() + "@" + loc.getStartOffset() + "-" +
+            loc.getEndOffset());
+    }
+   Collections.sort(locs);
+   for (String s : locs) {
+      buf.append(";");
+      buf.append(s);
+    }
+   
+   return buf.toString();
+}
+
+
+private void stopProcessing()
+{
+   CandidateProcessor cp;
+   synchronized (this) {
+      cp = candidate_processor;
+      candidate_processor = null;
+    }
+   if (cp == null) return;
+   
+   // cancelling completes any outstanding requests, so this is quick
+   cp.cancel();
+   cp.waitForDone();
 }
 
 
@@ -206,8 +482,13 @@ void outputXml(IvyXmlWriter xw)
    xw.begin("CANDIDATE");
    xw.field("ID",candidate_id);
    xw.field("STATE",candidate_state);
+   if (queue_wait >= 0) xw.field("WAIT",queue_wait);
+   if (is_deferred) xw.field("DEFERRED",true);
    for_thread.outputXml(xw);
-   for_frame.outputXml(xw);
+   // release() may clear the frame while the publisher is writing this
+   DiadStackFrame frm = for_frame;
+   if (frm != null) frm.outputXml(xw);
+   candidate_timeline.outputXml(xw);
    xw.end("CANDIDATE");
 }
 
@@ -215,17 +496,65 @@ void outputXml(IvyXmlWriter xw)
 
 /********************************************************************************/
 /*                                                                              */
-/*      Thread to process the candidate                                         */
+/*      Task to process the candidate; run by the candidate scheduler           */
 /*                                                                              */
 /********************************************************************************/
 
-private final class CandidateThread extends Thread {
+private final class CandidateProcessor implements Runnable {
+   
+   private Thread run_thread;
+   private DiadCancelToken cancel_token;
+   private CompletableFuture<Void> prefetch_future;
+   
+   CandidateProcessor() {
+      run_thread = null;
+      cancel_token = new DiadCancelToken();
+      prefetch_future = null;
+    }
+   
+   void cancel() {
+      cancel_token.cancel();
+      synchronized (this) {
+         if (run_thread != null) run_thread.interrupt();
+       }
+    }
+   
+   synchronized void waitForDone() {
+      while (run_thread != null) {
+         try {
+            wait();
+          }
+         catch (InterruptedException e) {
+            return;
+          }
+       }
+    }
    
-   CandidateThread() {
-      super("CandidateProcessor_" + for_thread.getThreadName()); 
+   private boolean isCancelled() {
+      return DiadCancelToken.isCancelled(cancel_token);
     }
    
    @Override public void run() {
+      synchronized (this) {
+         if (cancel_token.isCancelled()) return;
+         run_thread = Thread.currentThread();
+       }
+      DicontrolTimeline prev = DicontrolTimeline.setCurrent(candidate_timeline);
+      try {
+         process();
+       }
+      finally {
+         DicontrolTimeline.setCurrent(prev);
+         synchronized (this) {
+            run_thread = null;
+            notifyAll();
+          }
+         // don't leave the interrupt for the next candidate on this thread
+         Thread.interrupted();
+       }
+    }
+   
+   private void process() {
       DianalysisManager anal = diad_control.getAnalysisManager();
       DiexecuteManager exec = diad_control.getExecuteManager();
       DiadSymptom symptom = null;
@@ -244,6 +573,21 @@ private final class CandidateThread extends Thread {
                      setState(DiadCandidateState.NO_STACK);
                      return;
                    }
+                  if (candidate_signature == null) {
+                     String exc = for_thread.getExceptionType();
+                     candidate_signature = (exc == null ? "" : exc) + "@" + 
+                        stk.getSignature();
+                   }
+                  // symptom given by the user
+                  if (candidate_symptom != null) {
+                     setState(DiadCandidateState.SYMPTOM_FOUND);
+                     break;
+                   }
+                  // another candidate is already doing this work
+                  if (diad_control.joinCandidateGroup(DicontrolCandidate.this,
+                        candidate_signature)) {
+                     return;
+                   }
                   DicontrolSymptomFinder finder =
                      new DicontrolSymptomFinder(diad_control,for_thread,
                            stk,for_frame);
@@ -266,9 +610,19 @@ private final class CandidateThread extends Thread {
                   return;
                case SYMPTOM_FOUND :
                   if (checkInterrupted()) break;
-                  anal.addFiles(file_mode,candidate_files,for_thread);  
-                  if (checkInterrupted()) break;
-                  Boolean fg = anal.waitForAnalysis(); 
+                  if (useCachedResult()) return;
+                  startPrefetch();
+                  int gen;
+                  if (loaded_mode != file_mode) {
+                     gen = anal.addFiles(file_mode,candidate_files,for_thread,cancel_token);  
+                     if (checkInterrupted()) break;
+                     loaded_mode = file_mode;
+                   }
+                  else {
+                     gen = anal.loadFiles(candidate_files,for_thread,cancel_token);
+                     if (checkInterrupted()) break;
+                   }
+                  Boolean fg = anal.waitForAnalysis(gen,cancel_token); 
                   if (fg == null || checkInterrupted()) break;
                   if (fg) {
                      setState(DiadCandidateState.ANALYSIS_DONE);
@@ -279,9 +633,10 @@ private final class CandidateThread extends Thread {
                   break;
                case ANALYSIS_DONE :
                   location_set = null;
+                  waitForPrefetch();
                   if (checkInterrupted()) break;
                   Collection<DiadLocation> locs = anal.findInitialLocations(
-                        candidate_symptom,for_thread);
+                        candidate_symptom,for_thread,cancel_token);
                   if (checkInterrupted()) break;
                   if (locs == null ||locs.isEmpty()) {
                      setState(DiadCandidateState.NO_LOCATIONS); 
@@ -292,15 +647,23 @@ private final class CandidateThread extends Thread {
                    }
                   break; 
                case INITIAL_LOCATIONS :
+                  String inputs = getFrameInputs();
+                  if (start_frame != null && inputs.equals(frame_inputs)) {
+                     setState(DiadCandidateState.STARTING_FRAME_FOUND);
+                     return;
+                   }
                   start_frame = null;
+                  frame_inputs = null;
                   if (checkInterrupted()) break;
                   start_frame = exec.getStartingFrame(candidate_symptom,
-                        for_thread,location_set);
+                        for_thread,location_set,cancel_token);
                   if (checkInterrupted()) break;
                   if (start_frame == null) {
                      setState(DiadCandidateState.NO_START_FRAME);
                    }
                   else {
+                     frame_inputs = inputs;
+                     saveResult();
                      setState(DiadCandidateState.STARTING_FRAME_FOUND);
                    }
                   return;
@@ -315,7 +678,7 @@ private final class CandidateThread extends Thread {
              }
           }
          catch (Throwable e) {
-            if (isInterrupted()) {
+            if (isCancelled()) {
                return;
              }
             IvyLog.logE("DICONTROL","Problem processing candidate",e);
@@ -325,14 +688,60 @@ private final class CandidateThread extends Thread {
     }
    
    
+   // parse and resolve the stack's source files while FAIT runs; both
+   // the location filter and the start finder need them
+   
+   private void startPrefetch() {
+      if (!use_prefetch || prefetch_future != null) return;
+      DiadStack stk = for_thread.getStack();
+      DisourceManager srcmgr = diad_control.getSourceManager();
+      if (stk == null || srcmgr == null) return;
+      
+      prefetch_future = diad_control.getCandidateScheduler().prefetch(() -> {
+         DicontrolTimeline prev = DicontrolTimeline.setCurrent(candidate_timeline);
+         try {
+            prefetchSources(stk,srcmgr);
+          }
+         finally {
+            DicontrolTimeline.setCurrent(prev);
+          }
+       });
+      cancel_token.track(prefetch_future);
+    }
+   
+   private void prefetchSources(DiadStack stk,DisourceManager srcmgr) {
+      for (DiadStackFrame frm : stk.getFrames()) {
+         if (cancel_token.isCancelled()) return;
+         File f = frm.getSourceFile();
+         if (!frm.isUserFrame() || f == null || !f.canRead()) continue;
+         try {
+            String proj = srcmgr.getProjectForFile(f);
+            srcmgr.getSourceNode(proj,f,-1,frm.getLineNumber(),true,false);
+          }
+         catch (Throwable t) {
+            IvyLog.logD("DICONTROL","Prefetch failed for " + f + ": " + t);
+          }
+       }
+    }
+   
+   private void waitForPrefetch() {
+      CompletableFuture<Void> fut = prefetch_future;
+      if (fut == null) return;
+      try {
+         fut.get();
+       }
+      catch (InterruptedException | ExecutionException | CancellationException e) { }
+    }
+   
    private boolean checkInterrupted() {
-      if (isInterrupted()) {
+      if (isCancelled()) {
          setState(DiadCandidateState.INTERUPTED); 
          return true;
        }
       return false;
     }
-}
+   
+}       // end of inner class CandidateProcessor
 
 
 
@@ -0,0 +1,172 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolCandidateGroup.java                                    */
+/*                                                                              */
+/*      Candidates with the same stack signature sharing one run                */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.brown.cs.diad.dicore.DiadCandidateCallback;
+
+class DicontrolCandidateGroup implements DicontrolConstants, DiadCandidateCallback
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private String                  group_signature;
+private DicontrolCandidate      group_leader;
+private List<DicontrolCandidate> group_followers;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DicontrolCandidateGroup(String sig,DicontrolCandidate leader)
+{
+   group_signature = sig;
+   group_leader = leader;
+   group_followers = new ArrayList<>();
+   leader.addCandidateListener(this);
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Access methods                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+String getSignature()                           { return group_signature; }
+
+synchronized boolean isEmpty()                  { return group_leader == null; }
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Membership methods                                                      */
+/*                                                                              */
+/********************************************************************************/
+
+// returns false if dc is the one doing the work
+
+synchronized boolean addFollower(DicontrolCandidate dc)
+{
+   if (dc == group_leader) return false;
+   if (!group_followers.contains(dc)) group_followers.add(dc);
+   
+   return true;
+}
+
+
+// returns the new leader if the leader was removed
+
+synchronized DicontrolCandidate removeCandidate(DicontrolCandidate dc)
+{
+   if (dc != group_leader) {
+      group_followers.remove(dc);
+      return null;
+    }
+   
+   dc.removeCandidateListener(this);
+   if (group_followers.isEmpty()) {
+      group_leader = null;
+      return null;
+    }
+   
+   group_leader = group_followers.remove(0);
+   group_leader.addCandidateListener(this);
+   
+   return group_leader;
+}
+
+
+void shareWith(DicontrolCandidate dc)
+{
+   DicontrolCandidate lead;
+   synchronized (this) {
+      lead = group_leader;
+    }
+   if (lead != null) dc.shareFrom(lead);
+}
+
+
+// the new leader continues from wherever the old one left it
+
+void startLeader(DicontrolCandidate dc)
+{
+   switch (dc.getState()) {
+      case INITIAL :
+      case SYMPTOM_FOUND :
+      case ANALYSIS_DONE :
+      case INITIAL_LOCATIONS :
+         dc.start();
+         break;
+      default :
+         break;
+    }
+   stateChanged();
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Pass leader results on to the followers                                 */
+/*                                                                              */
+/********************************************************************************/
+
+@Override public void stateChanged()
+{
+   DicontrolCandidate lead;
+   List<DicontrolCandidate> fols;
+   synchronized (this) {
+      lead = group_leader;
+      fols = new ArrayList<>(group_followers);
+    }
+   if (lead == null) return;
+   
+   // followers notify their own listeners; don't hold the lock for that
+   for (DicontrolCandidate dc : fols) {
+      dc.shareFrom(lead);
+    }
+}
+
+
+}       // end of class DicontrolCandidateGroup
+
+
+
+
+/* end of DicontrolCandidateGroup.java */
@@ -0,0 +1,204 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolCandidateScheduler.java                                */
+/*                                                                              */
+/*      Bounded, prioritized pool for processing debug candidates               */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.brown.cs.ivy.file.IvyLog;
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+class DicontrolCandidateScheduler implements DicontrolConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private ThreadPoolExecutor      thread_pool;
+private ThreadPoolExecutor      prefetch_pool;
+private AtomicLong              submit_counter;
+private int                     num_run;
+private long                    total_wait;
+private long                    max_wait;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DicontrolCandidateScheduler(DicontrolMain ctrl)
+{
+   int nthread = Math.max(1,ctrl.getProperty("Diad.candidate.threads",2));
+
+   // candidates share one FAIT session; only a few should run at once
+   thread_pool = new ThreadPoolExecutor(nthread,nthread,60,TimeUnit.SECONDS,
+         new PriorityBlockingQueue<>(),new CandidateThreadFactory("Candidate"));
+   thread_pool.allowCoreThreadTimeOut(true);
+   
+   // work that doesn't need FAIT, done while a candidate waits for it
+   int npre = Math.max(1,ctrl.getProperty("Diad.prefetch.threads",2));
+   prefetch_pool = new ThreadPoolExecutor(npre,npre,60,TimeUnit.SECONDS,
+         new LinkedBlockingQueue<>(),new CandidateThreadFactory("Prefetch"));
+   prefetch_pool.allowCoreThreadTimeOut(true);
+
+   submit_counter = new AtomicLong();
+   num_run = 0;
+   total_wait = 0;
+   max_wait = 0;
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Schedule a candidate for processing                                     */
+/*                                                                              */
+/********************************************************************************/
+
+void schedule(DicontrolCandidate dc,Runnable r)
+{
+   boolean exc = dc.getThread().getExceptionType() != null;
+   CandidateTask task = new CandidateTask(dc,r,exc,submit_counter.incrementAndGet());
+
+   thread_pool.execute(task);
+}
+
+
+CompletableFuture<Void> prefetch(Runnable r)
+{
+   return CompletableFuture.runAsync(r,prefetch_pool);
+}
+
+
+void shutdown()
+{
+   thread_pool.shutdownNow();
+   prefetch_pool.shutdownNow();
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Statistics                                                              */
+/*                                                                              */
+/********************************************************************************/
+
+private synchronized void noteWait(long wait)
+{
+   ++num_run;
+   total_wait += wait;
+   max_wait = Math.max(max_wait,wait);
+}
+
+
+synchronized void outputXml(IvyXmlWriter xw)
+{
+   xw.begin("CANDIDATES");
+   xw.field("ACTIVE",thread_pool.getActiveCount());
+   xw.field("QUEUED",thread_pool.getQueue().size());
+   xw.field("THREADS",thread_pool.getMaximumPoolSize());
+   xw.field("COUNT",num_run);
+   xw.field("WAIT",total_wait);
+   xw.field("MAXWAIT",max_wait);
+   xw.field("PREFETCH",prefetch_pool.getActiveCount() + prefetch_pool.getQueue().size());
+   xw.end("CANDIDATES");
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Prioritized task: exceptions before breakpoints, newest first           */
+/*                                                                              */
+/********************************************************************************/
+
+private final class CandidateTask implements Runnable, Comparable<CandidateTask> {
+
+   private DicontrolCandidate for_candidate;
+   private Runnable for_runnable;
+   private boolean is_exception;
+   private long submit_order;
+   private long submit_time;
+
+   CandidateTask(DicontrolCandidate dc,Runnable r,boolean exc,long order) {
+      for_candidate = dc;
+      for_runnable = r;
+      is_exception = exc;
+      submit_order = order;
+      submit_time = System.currentTimeMillis();
+    }
+
+   @Override public void run() {
+      long wait = System.currentTimeMillis() - submit_time;
+      for_candidate.noteQueueWait(wait);
+      noteWait(wait);
+      IvyLog.logD("DICONTROL","Candidate " + for_candidate.getId() + " waited " + wait);
+      for_runnable.run();
+    }
+
+   @Override public int compareTo(CandidateTask t) {
+      if (is_exception != t.is_exception) return (is_exception ? -1 : 1);
+      return Long.compare(t.submit_order,submit_order);
+    }
+
+}       // end of inner class CandidateTask
+
+
+private static final class CandidateThreadFactory implements ThreadFactory {
+
+   private String thread_name;
+   private AtomicInteger thread_counter = new AtomicInteger();
+
+   CandidateThreadFactory(String nm) {
+      thread_name = "DICONTROL_" + nm + "_";
+    }
+
+   @Override public Thread newThread(Runnable r) {
+      Thread t = new Thread(r,thread_name + thread_counter.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+
+}       // end of inner class CandidateThreadFactory
+
+
+}       // end of class DicontrolCandidateScheduler
+
+
+
+
+/* end of DicontrolCandidateScheduler.java */
@@ -22,6 +22,9 @@
 
 package edu.brown.cs.diad.dicontrol;
 
+import java.io.FileWriter;
+import java.io.IOException;
+
 import org.w3c.dom.Element;
 
 import edu.brown.cs.diad.dicore.DiadConstants.DiadCommand;
@@ -56,6 +59,10 @@ static DicontrolCommand createCommand(DicontrolMain ctrl,Element xml)
          return new CommandDelay(ctrl,xml);
       case "EXIT" :
           return new CommandExit(ctrl,xml);
+      case "STATS" :
+         return new CommandStats(ctrl,xml);
+      case "TRACE" :
+         return new CommandTrace(ctrl,xml);
       default :
          IvyLog.logE("DICONTROL","Unknown command " + cmd + " " +
                IvyXml.convertXmlToString(xml));
@@ -203,6 +210,69 @@ private static class CommandDelay extends DicontrolCommand {
 
 
 
+/********************************************************************************/
+/*                                                                              */
+/*      Statistics command                                                      */
+/*                                                                              */
+/********************************************************************************/
+
+private static class CommandStats extends DicontrolCommand {
+
+   private String output_file;
+
+   CommandStats(DicontrolMain ctrl,Element xml) {
+      super(ctrl,xml);
+      output_file = IvyXml.getAttrString(xml,"FILE");
+    }
+
+   @Override public void process(IvyXmlWriter xw) throws IOException {
+      if (output_file == null) {
+         diad_control.outputStatistics(xw);
+         return;
+       }
+      try (IvyXmlWriter sxw = new IvyXmlWriter();
+            FileWriter fw = new FileWriter(output_file)) {
+         diad_control.outputStatistics(sxw);
+         fw.write(sxw.toString());
+       }
+      xw.textElement("FILE",output_file);
+    }
+
+}       // end of inner class CommandStats
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Trace command: candidate timelines as Chrome trace events               */
+/*                                                                              */
+/********************************************************************************/
+
+private static class CommandTrace extends DicontrolCommand {
+
+   private String output_file;
+
+   CommandTrace(DicontrolMain ctrl,Element xml) {
+      super(ctrl,xml);
+      output_file = IvyXml.getAttrString(xml,"FILE");
+    }
+
+   @Override public void process(IvyXmlWriter xw) throws IOException {
+      String trace = diad_control.outputTrace();
+      if (output_file == null) {
+         xw.textElement("TRACE",trace);
+         return;
+       }
+      try (FileWriter fw = new FileWriter(output_file)) {
+         fw.write(trace);
+       }
+      xw.textElement("FILE",output_file);
+    }
+
+}       // end of inner class CommandTrace
+
+
+
 /********************************************************************************/
 /*                                                                              */
 /*      Exit command                                                            */
@@ -0,0 +1,218 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolCommandExecutor.java                                   */
+/*                                                                              */
+/*      Bounded thread pool for processing asynchronous DIAD commands           */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.brown.cs.ivy.file.IvyLog;
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+class DicontrolCommandExecutor implements DicontrolConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private ThreadPoolExecutor      thread_pool;
+private Map<String,CommandStats> command_stats;
+private AtomicInteger           reject_count;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DicontrolCommandExecutor(DicontrolMain ctrl)
+{
+   int nthread = Math.max(1,ctrl.getProperty("Diad.command.threads",4));
+   int nqueue = Math.max(1,ctrl.getProperty("Diad.command.queue",64));
+
+   thread_pool = new ThreadPoolExecutor(nthread,nthread,60,TimeUnit.SECONDS,
+         new ArrayBlockingQueue<>(nqueue),new CommandThreadFactory());
+   thread_pool.allowCoreThreadTimeOut(true);
+
+   command_stats = new TreeMap<>();
+   reject_count = new AtomicInteger();
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Submit a command for processing                                         */
+/*                                                                              */
+/********************************************************************************/
+
+boolean submit(String name,Runnable r)
+{
+   try {
+      thread_pool.execute(new CommandTask(name,r));
+      return true;
+    }
+   catch (RejectedExecutionException e) {
+      reject_count.incrementAndGet();
+      IvyLog.logE("DICONTROL","Command " + name + " rejected: " +
+            thread_pool.getQueue().size() + " commands waiting");
+      return false;
+    }
+}
+
+
+void shutdown()
+{
+   thread_pool.shutdown();
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Statistics                                                              */
+/*                                                                              */
+/********************************************************************************/
+
+private synchronized void noteCommand(String name,long wait,long run)
+{
+   CommandStats cs = command_stats.get(name);
+   if (cs == null) {
+      cs = new CommandStats();
+      command_stats.put(name,cs);
+    }
+   cs.add(wait,run);
+}
+
+
+synchronized void outputXml(IvyXmlWriter xw)
+{
+   xw.begin("COMMANDS");
+   xw.field("ACTIVE",thread_pool.getActiveCount());
+   xw.field("QUEUED",thread_pool.getQueue().size());
+   xw.field("REJECTED",reject_count.get());
+   for (Map.Entry<String,CommandStats> ent : command_stats.entrySet()) {
+      xw.begin("COMMAND");
+      xw.field("NAME",ent.getKey());
+      ent.getValue().outputXml(xw);
+      xw.end("COMMAND");
+    }
+   xw.end("COMMANDS");
+}
+
+
+
+private static class CommandStats {
+
+   private int num_command;
+   private long total_wait;
+   private long max_wait;
+   private long total_run;
+   private long max_run;
+
+   void add(long wait,long run) {
+      ++num_command;
+      total_wait += wait;
+      max_wait = Math.max(max_wait,wait);
+      total_run += run;
+      max_run = Math.max(max_run,run);
+    }
+
+   void outputXml(IvyXmlWriter xw) {
+      xw.field("COUNT",num_command);
+      xw.field("WAIT",total_wait);
+      xw.field("MAXWAIT",max_wait);
+      xw.field("RUN",total_run);
+      xw.field("MAXRUN",max_run);
+    }
+
+}       // end of inner class CommandStats
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Task wrapper to record queue and run times                              */
+/*                                                                              */
+/********************************************************************************/
+
+private final class CommandTask implements Runnable {
+
+   private String command_name;
+   private Runnable for_runnable;
+   private long submit_time;
+
+   CommandTask(String name,Runnable r) {
+      command_name = name;
+      for_runnable = r;
+      submit_time = System.currentTimeMillis();
+    }
+
+   @Override public void run() {
+      long start = System.currentTimeMillis();
+      try {
+         for_runnable.run();
+       }
+      finally {
+         long done = System.currentTimeMillis();
+         long wait = start - submit_time;
+         long run = done - start;
+         noteCommand(command_name,wait,run);
+         IvyLog.logD("DICONTROL","Command " + command_name + " waited " + wait +
+               " ran " + run);
+       }
+    }
+
+}       // end of inner class CommandTask
+
+
+private static final class CommandThreadFactory implements ThreadFactory {
+
+   private AtomicInteger thread_counter = new AtomicInteger();
+
+   @Override public Thread newThread(Runnable r) {
+      Thread t = new Thread(r,"DICONTROL_Command_" + thread_counter.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+
+}       // end of inner class CommandThreadFactory
+
+
+}       // end of class DicontrolCommandExecutor
+
+
+
+
+/* end of DicontrolCommandExecutor.java */
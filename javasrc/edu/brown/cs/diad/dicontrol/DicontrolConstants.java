@@ -40,6 +40,11 @@ import edu.brown.cs.diad.dicore.DiadConstants;
 public interface DicontrolConstants extends DiadConstants
 {
 
+enum DicontrolTransportMode {
+   LIVE,
+   RECORD,
+   REPLAY,
+}
 
 
 
@@ -0,0 +1,212 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolEvaluations.java                                       */
+/*                                                                              */
+/*      Correlate asynchronous EVALUATION replies with their requests           */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.w3c.dom.Element;
+
+import edu.brown.cs.ivy.file.IvyLog;
+
+class DicontrolEvaluations implements DicontrolConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private Map<String,EvalEntry> eval_map;
+private long            eval_timeout;
+private long            reap_interval;
+private AtomicLong      last_reap;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DicontrolEvaluations(long timeout,long reap)
+{
+   eval_map = new ConcurrentHashMap<>();
+   eval_timeout = timeout;
+   reap_interval = reap;
+   last_reap = new AtomicLong(System.currentTimeMillis());
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Handle replies                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+void noteResult(String id,Element xml)
+{
+   EvalEntry ee = eval_map.computeIfAbsent(id,k -> new EvalEntry());
+   ee.getFuture().complete(xml);
+
+   checkReap();
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Wait for replies                                                        */
+/*                                                                              */
+/********************************************************************************/
+
+CompletableFuture<Element> getFuture(String id)
+{
+   EvalEntry ee = eval_map.computeIfAbsent(id,k -> new EvalEntry());
+   ee.noteWaiter();
+   return ee.getFuture();
+}
+
+
+Element waitFor(String id)
+{
+   Map<String,Element> rslt = waitFor(List.of(id));
+
+   return rslt.get(id);
+}
+
+
+Map<String,Element> waitFor(Collection<String> ids)
+{
+   Map<String,Element> rslt = new HashMap<>();
+   if (ids.isEmpty()) return rslt;
+
+   List<CompletableFuture<Element>> waits = new ArrayList<>();
+   for (String id : ids) {
+      waits.add(getFuture(id));
+    }
+
+   CompletableFuture<Void> all = CompletableFuture.allOf(
+         waits.toArray(new CompletableFuture<?>[waits.size()]));
+   try {
+      if (eval_timeout > 0) all.get(eval_timeout,TimeUnit.MILLISECONDS);
+      else all.get();
+    }
+   catch (TimeoutException e) {
+      IvyLog.logE("DICONTROL","Timed out waiting for evaluations " + ids);
+    }
+   catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+   catch (ExecutionException e) { }
+   catch (CancellationException e) { }
+
+   int i = 0;
+   for (String id : ids) {
+      Element xml = waits.get(i++).getNow(null);
+      if (xml != null) rslt.put(id,xml);
+      eval_map.remove(id);
+    }
+
+   return rslt;
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Remove replies that no one is waiting for                               */
+/*                                                                              */
+/********************************************************************************/
+
+private void checkReap()
+{
+   long now = System.currentTimeMillis();
+   long last = last_reap.get();
+   if (now - last < reap_interval) return;
+   if (!last_reap.compareAndSet(last,now)) return;
+
+   int ct = 0;
+   for (Iterator<EvalEntry> it = eval_map.values().iterator(); it.hasNext(); ) {
+      EvalEntry ee = it.next();
+      if (ee.isOrphan(now - reap_interval)) {
+         it.remove();
+         ++ct;
+       }
+    }
+
+   if (ct > 0) IvyLog.logD("DICONTROL","Removed " + ct + " unclaimed evaluations");
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Entry for a single evaluation                                           */
+/*                                                                              */
+/********************************************************************************/
+
+private static class EvalEntry {
+
+   private CompletableFuture<Element> eval_future;
+   private long create_time;
+   private volatile boolean has_waiter;
+
+   EvalEntry() {
+      eval_future = new CompletableFuture<>();
+      create_time = System.currentTimeMillis();
+      has_waiter = false;
+    }
+
+   CompletableFuture<Element> getFuture()       { return eval_future; }
+
+   void noteWaiter()                            { has_waiter = true; }
+
+   boolean isOrphan(long before) {
+      return !has_waiter && create_time < before;
+    }
+
+}       // end of inner class EvalEntry
+
+
+}       // end of class DicontrolEvaluations
+
+
+
+
+/* end of DicontrolEvaluations.java */
@@ -0,0 +1,131 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolEvent.java                                             */
+/*                                                                              */
+/*      Incoming message, either live or replayed                               */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import org.w3c.dom.Element;
+
+import edu.brown.cs.ivy.mint.MintMessage;
+import edu.brown.cs.ivy.xml.IvyXml;
+
+class DicontrolEvent implements DicontrolConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private String          event_source;
+private String          event_argument;
+private String          event_text;
+private Element         event_xml;
+private MintMessage     mint_message;
+private boolean         has_replied;
+private String          reply_text;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DicontrolEvent(String source,String arg,MintMessage msg)
+{
+   event_source = source;
+   event_argument = arg;
+   event_text = msg.getText();
+   event_xml = msg.getXml();
+   mint_message = msg;
+   has_replied = false;
+   reply_text = null;
+}
+
+
+DicontrolEvent(String source,String arg,String text)
+{
+   event_source = source;
+   event_argument = arg;
+   event_text = text;
+   event_xml = IvyXml.convertStringToXml(text);
+   mint_message = null;
+   has_replied = false;
+   reply_text = null;
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Access methods                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+String getSource()                              { return event_source; }
+
+String getArgument()                            { return event_argument; }
+
+String getText()                                { return event_text; }
+
+Element getXml()                                { return event_xml; }
+
+synchronized String getReply()                  { return reply_text; }
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Reply methods                                                           */
+/*                                                                              */
+/********************************************************************************/
+
+void replyTo()
+{
+   replyTo(null);
+}
+
+
+void replyTo(String rslt)
+{
+   synchronized (this) {
+      if (has_replied) return;
+      has_replied = true;
+      reply_text = rslt;
+    }
+
+   if (mint_message != null) {
+      if (rslt == null) mint_message.replyTo();
+      else mint_message.replyTo(rslt);
+    }
+}
+
+
+}       // end of class DicontrolEvent
+
+
+
+
+/* end of DicontrolEvent.java */
@@ -38,15 +38,22 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 
 import org.w3c.dom.Element;
 
 import edu.brown.cs.diad.dianalysis.DianalysisManager;
+import edu.brown.cs.diad.dicore.DiadCancelToken;
 import edu.brown.cs.diad.dicore.DiadException;
 import edu.brown.cs.diad.dicore.DiadRuntimeCallback;
 import edu.brown.cs.diad.dicore.DiadThread;
@@ -90,14 +97,24 @@ private boolean log_stderr;
 private File log_file;
 private DicontrolMonitor dicontrol_monitor;
 private File input_file;
+private File batch_file;
 private boolean server_mode;
 private DiruntimeManager run_manager;
 private Map<DiadThread,DicontrolCandidate> debug_candidates;
+private DicontrolCandidateScheduler candidate_scheduler;
+private Map<String,DicontrolCandidateGroup> candidate_groups;
+private boolean share_candidates;
+private File cache_directory;
+private DicontrolResultCache result_cache;
+private DicontrolUpdatePublisher update_publisher;
+private DicontrolAdmission candidate_admission;
 private DisourceManager source_factory;
 private DitestFactory test_factory;
 private DianalysisManager analysis_manager;
 private DiexecuteManager execute_manager;
 private Properties  diad_properties;
+
+private static volatile boolean debug_logging = false;
  
 
 
@@ -135,12 +152,26 @@ private DicontrolMain(String [] args)
     }
    
    input_file = null;
+   batch_file = null;
    server_mode = false;
 
    dicontrol_monitor = null;
    run_manager = new DiruntimeManager(this);  
    
    debug_candidates = new HashMap<>();
+   candidate_scheduler = new DicontrolCandidateScheduler(this);
+   candidate_groups = new HashMap<>();
+   update_publisher = new DicontrolUpdatePublisher(this);
+   candidate_admission = new DicontrolAdmission(this);
+   String share = getProperty("Diad.candidate.share");
+   share_candidates = share == null || Boolean.parseBoolean(share);
+   String cdir = getProperty("Diad.cache.directory");
+   cache_directory = (cdir == null ? new File(f2,"DiadCache") : new File(cdir));
+   result_cache = null;
+   String cache = getProperty("Diad.cache.results");
+   if (cache == null || Boolean.parseBoolean(cache)) {
+      result_cache = new DicontrolResultCache(this,cache_directory);
+    }
    run_manager.addRuntimeListener(new RuntimeCallback());
    
    source_factory = null;
@@ -168,6 +199,74 @@ DianalysisManager getAnalysisManager()          { return analysis_manager; }
 
 DiexecuteManager getExecuteManager()            { return execute_manager; }
 
+DicontrolCandidateScheduler getCandidateScheduler() { return candidate_scheduler; }
+
+DicontrolResultCache getResultCache()           { return result_cache; }
+
+public File getCacheDirectory()                 { return cache_directory; }
+
+DicontrolUpdatePublisher getUpdatePublisher()   { return update_publisher; }
+
+DicontrolAdmission getAdmission()               { return candidate_admission; }
+
+
+// start deferred candidates that fit now that others have finished or been shed
+
+void startDeferred()
+{
+   startCandidates(candidate_admission.retry());
+}
+
+
+private void startCandidates(Collection<DicontrolCandidate> cands)
+{
+   for (DicontrolCandidate dc : cands) {
+      dc.start();
+    }
+}
+
+
+// returns true if another candidate with the same signature is doing the work
+
+boolean joinCandidateGroup(DicontrolCandidate dc,String sig)
+{
+   if (!share_candidates || sig == null) return false;
+   
+   DicontrolCandidateGroup grp;
+   synchronized (candidate_groups) {
+      grp = candidate_groups.get(sig);
+      if (grp == null) {
+         candidate_groups.put(sig,new DicontrolCandidateGroup(sig,dc));
+         return false;
+       }
+      if (!grp.addFollower(dc)) return false;
+    }
+   
+   IvyLog.logD("DICONTROL","Candidate " + dc.getId() + " shares " + sig);
+   grp.shareWith(dc);
+   
+   return true;
+}
+
+
+void leaveCandidateGroup(DicontrolCandidate dc)
+{
+   String sig = dc.getSignature();
+   if (sig == null) return;
+   
+   DicontrolCandidateGroup grp;
+   DicontrolCandidate lead;
+   synchronized (candidate_groups) {
+      grp = candidate_groups.get(sig);
+      if (grp == null) return;
+      lead = grp.removeCandidate(dc);
+      if (grp.isEmpty()) candidate_groups.remove(sig);
+    }
+   
+   if (lead != null) grp.startLeader(lead);
+}
+
+
 DitestFactory getTestManager()
 {
    if (test_factory ==  null) {
@@ -185,6 +284,9 @@ DitestFactory checkTestManager()
 public String getMintId()                       { return mint_id; 
 }
 
+// check before building expensive log text
+public static boolean isDebugLogging()          { return debug_logging; }
+
 public void setupMessageServer(String mintid)
 {
    mint_id = mintid;
@@ -192,6 +294,38 @@ public void setupMessageServer(String mintid)
   
 }
 
+
+// every path starts the transport the same way once eclipse is ready
+
+public void startMessageServer()
+{
+   bubblesReady();
+   dicontrol_monitor.start();
+}
+
+
+// a replayed session answers from the recording and needs no IDE or servers
+
+public boolean isReplaying()
+{
+   DicontrolTransportMode mode = getProperty("Diad.transport",DicontrolTransportMode.LIVE);
+   return mode == DicontrolTransportMode.REPLAY;
+}
+
+// set up without an IDE, answering requests from a recorded session
+
+static DicontrolMain setupReplay(File session)
+{
+   DicontrolMain dm = new DicontrolMain(new String [0]);
+   dm.diad_properties.setProperty("Diad.transport",DicontrolTransportMode.REPLAY.toString());
+   dm.diad_properties.setProperty("Diad.transport.file",session.getPath());
+   dm.setupMessageServer("DIAD_REPLAY");
+   dm.startMessageServer();
+   
+   return dm;
+}
+
+
 public void bubblesReady()
 {
    source_factory = new DisourceManager(this);
@@ -238,6 +372,20 @@ public int getProperty(String id,int dflt)
 }
 
 
+public double getProperty(String id,double dflt)
+{
+   String s = getProperty(id);
+   if (s == null || s.isEmpty()) return dflt;
+   
+   try {
+      return Double.parseDouble(s);
+    } 
+   catch (NumberFormatException e) { }
+   
+   return dflt;
+}
+
+
 
 
 /********************************************************************************/
@@ -252,6 +400,13 @@ public Element sendBubblesMessage(String cmd,CommandArgs args,String xml)
 }
 
 
+public CompletableFuture<Element> sendBubblesMessageAsync(String cmd,CommandArgs args,
+      String xml)
+{
+   return dicontrol_monitor.sendBubblesMessageAsync(cmd,args,xml);
+}
+
+
 public boolean pingEclipse()
 {
    return dicontrol_monitor.pingEclipse();
@@ -269,21 +424,122 @@ public Element sendFaitMessage(String cmd,CommandArgs args,String cnts)
 }
 
 
+public Element sendFaitMessage(String cmd,CommandArgs args,String cnts,
+      DiadCancelToken tok)
+{
+   return dicontrol_monitor.sendFaitMessage(cmd,args,cnts,tok); 
+}
+
+
+public CompletableFuture<Element> sendFaitMessageAsync(String cmd,CommandArgs args,
+      String cnts)
+{
+   return dicontrol_monitor.sendFaitMessageAsync(cmd,args,cnts);
+}
+
+
 public Element sendSeedeMessage(String id,String cmd,CommandArgs args,String cnts)
 {
    return dicontrol_monitor.sendSeedeMessage(id,cmd,args,cnts);
 }
 
+
+public Element sendSeedeMessage(String id,String cmd,CommandArgs args,String cnts,
+      DiadCancelToken tok)
+{
+   return dicontrol_monitor.sendSeedeMessage(id,cmd,args,cnts,tok);
+}
+
+
+public CompletableFuture<Element> sendSeedeMessageAsync(String id,String cmd,
+      CommandArgs args,String cnts)
+{
+   return dicontrol_monitor.sendSeedeMessageAsync(id,cmd,args,cnts);
+}
+
 public Element sendDiadMessage(String cmd,CommandArgs args,String xml)
 {
    return dicontrol_monitor.sendDiadMessage(cmd,args,xml); 
 }
 
+
+public CompletableFuture<Element> sendDiadMessageAsync(String cmd,CommandArgs args,
+      String xml)
+{
+   return dicontrol_monitor.sendDiadMessageAsync(cmd,args,xml);
+}
+
+
+public DiadServerState getServerState(String server)
+{
+   return dicontrol_monitor.getServerState(server);
+}
+
+
+void outputStatistics(IvyXmlWriter xw)
+{
+   dicontrol_monitor.outputStatistics(xw);
+}
+
+
+void outputCandidates(IvyXmlWriter xw)
+{
+   List<DicontrolCandidate> cands;
+   synchronized (debug_candidates) {
+      cands = new ArrayList<>(debug_candidates.values());
+    }
+   for (DicontrolCandidate dc : cands) {
+      dc.outputXml(xw);
+    }
+}
+
+
+// Chrome trace events for the current candidates
+
+String outputTrace()
+{
+   List<DicontrolTimeline> tls = new ArrayList<>();
+   synchronized (debug_candidates) {
+      for (DicontrolCandidate dc : debug_candidates.values()) {
+         tls.add(dc.getTimeline());
+       }
+    }
+   
+   return DicontrolTimeline.outputTrace(tls);
+}
+
+
+private void saveTrace(DicontrolCandidate dc)
+{
+   String dir = getProperty("Diad.trace.directory");
+   if (dir == null) return;
+   
+   File f = new File(dir,dc.getId().replace(" ","") + ".json");
+   String trace = DicontrolTimeline.outputTrace(Collections.singletonList(dc.getTimeline()));
+   try (FileWriter fw = new FileWriter(f)) {
+      fw.write(trace);
+    }
+   catch (IOException e) {
+      IvyLog.logE("DICONTROL","Problem writing trace to " + f,e);
+    }
+}
+
+
+public Element waitForReply(CompletableFuture<Element> fut)
+{
+   return DicontrolReply.waitForReply(fut);
+}
+
 public Element waitForEvaluation(String id)
 {
    return dicontrol_monitor.waitForEvaluation(id);
 }
 
+public Map<String,Element> waitForEvaluations(Collection<String> ids)
+{
+   return dicontrol_monitor.waitForEvaluations(ids);
+}
+
 
 
 /********************************************************************************/
@@ -306,14 +562,27 @@ private void scanArgs(String [] args)
                input_file = new File(args[++i]);
                continue;
              }
+            else if (args[i].startsWith("-b")) {                // -batch <manifest>
+               batch_file = new File(args[++i]);
+               continue;
+             }
             else if (args[i].startsWith("-L")) {                // -Log <logfile>
 	       log_file = new File(args[++i]);
 	       continue;
 	     }
+            else if (args[i].startsWith("-rec")) {              // -record <session>
+               setTransport(DicontrolTransportMode.RECORD,args[++i]);
+               continue;
+             }
+            else if (args[i].startsWith("-rep")) {              // -replay <session>
+               setTransport(DicontrolTransportMode.REPLAY,args[++i]);
+               continue;
+             }
 	  }
 	 if (args[i].startsWith("-")) {
 	    if (args[i].startsWith("-D")) {                     // -DEBUG
 	       log_level = IvyLog.LogLevel.DEBUG;
+	       debug_logging = true;
 	       log_stderr = true;
 	       // set log level
 	     }
@@ -328,9 +597,17 @@ private void scanArgs(String [] args)
 
 
 
+private void setTransport(DicontrolTransportMode mode,String file)
+{
+   diad_properties.setProperty("Diad.transport",mode.toString());
+   diad_properties.setProperty("Diad.transport.file",file);
+}
+
+
 private void badArgs()
 {
-   System.err.println("DIAD: diad [-m <mint id>]");
+   System.err.println("DIAD: diad [-m <mint id>] [-f <script>] [-batch <manifest>] " +
+         "[-record|-replay <session>]");
    System.exit(1);
 }
 
@@ -351,11 +628,17 @@ private void process()
    IvyLog.setLogFile(log_file);
    IvyLog.useStdErr(log_stderr);
 
+   if (batch_file != null) {
+      DicontrolBatch batch = new DicontrolBatch(this,batch_file);
+      batch.process();
+      return;
+    }
+   
    IvyLog.logD("DICONTROL","Starting server for " + mint_id);
 
    if (mint_id != null) {
       setupMessageServer(mint_id);
-      bubblesReady();
+      startMessageServer();
     }
    
    if (input_file != null) {
@@ -443,18 +726,31 @@ private final class RuntimeCallback implements DiadRuntimeCallback {
    
 @Override public void threadStateChanged(DiadThread thrd)
 {
-   DicontrolCandidate dc = debug_candidates.get(thrd);
+   DicontrolCandidate dc = null;
+   synchronized (debug_candidates) {
+      dc = debug_candidates.get(thrd);
+    }
    if (dc != null) {
       if (thrd.isRunning() || thrd.isTerminated()) {
+         leaveCandidateGroup(dc);
          dc.terminate(); 
-         debug_candidates.remove(thrd);
+         synchronized (debug_candidates) {
+            debug_candidates.remove(thrd);
+          }
+         saveTrace(dc);
+         dc.release();
+         startCandidates(candidate_admission.remove(dc));
        }
     }
    else if (thrd.isStopped()) {
       dc = new DicontrolCandidate(DicontrolMain.this,thrd); 
-      debug_candidates.put(thrd,dc);
+      synchronized (debug_candidates) {
+         debug_candidates.put(thrd,dc);
+       }
       dc.addCandidateListener(new DicontrolUpdater(DicontrolMain.this,dc));
-      dc.start(); 
+      // over the memory budget the candidate waits for others to finish
+      if (candidate_admission.admit(dc)) dc.start(); 
+      else startDeferred();
     }
 }
    
@@ -0,0 +1,248 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolMetrics.java                                           */
+/*                                                                              */
+/*      Counts, sizes and latencies of messages sent and handled                */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+class DicontrolMetrics implements DicontrolConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private Map<String,MetricData> metric_map;
+private long            start_time;
+
+private static final int NUM_BUCKETS = 40;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DicontrolMetrics()
+{
+   metric_map = new ConcurrentHashMap<>();
+   start_time = System.currentTimeMillis();
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Recording methods                                                       */
+/*                                                                              */
+/********************************************************************************/
+
+void noteSend(String target,String cmd,int outbytes,int inbytes,long nanos,boolean ok)
+{
+   MetricData md = getMetric("SEND",target,cmd);
+   md.add(outbytes,inbytes,nanos,ok);
+}
+
+
+void noteHandler(String source,String cmd,int inbytes,long nanos,boolean ok)
+{
+   MetricData md = getMetric("HANDLE",source,cmd);
+   md.add(0,inbytes,nanos,ok);
+}
+
+
+DicontrolTransport.EventHandler meter(String source,DicontrolTransport.EventHandler hdlr)
+{
+   return new MeteredHandler(source,hdlr);
+}
+
+
+private MetricData getMetric(String type,String where,String cmd)
+{
+   String key = type + ":" + where + ":" + cmd;
+   return metric_map.computeIfAbsent(key,k -> new MetricData(type,where,cmd));
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Output methods                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+void outputXml(IvyXmlWriter xw)
+{
+   xw.begin("METRICS");
+   xw.field("START",start_time);
+   xw.field("UPTIME",System.currentTimeMillis() - start_time);
+   Map<String,MetricData> sorted = new TreeMap<>(metric_map);
+   for (MetricData md : sorted.values()) {
+      md.outputXml(xw);
+    }
+   xw.end("METRICS");
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Data for a single command                                               */
+/*                                                                              */
+/********************************************************************************/
+
+private static class MetricData {
+
+   private String metric_type;
+   private String metric_where;
+   private String metric_command;
+   private LongAdder num_calls;
+   private LongAdder num_errors;
+   private LongAdder bytes_out;
+   private LongAdder bytes_in;
+   private LongAdder total_time;
+   private AtomicLongArray time_buckets;
+
+   MetricData(String type,String where,String cmd) {
+      metric_type = type;
+      metric_where = where;
+      metric_command = cmd;
+      num_calls = new LongAdder();
+      num_errors = new LongAdder();
+      bytes_out = new LongAdder();
+      bytes_in = new LongAdder();
+      total_time = new LongAdder();
+      time_buckets = new AtomicLongArray(NUM_BUCKETS);
+    }
+
+   void add(int out,int in,long nanos,boolean ok) {
+      num_calls.increment();
+      if (!ok) num_errors.increment();
+      bytes_out.add(out);
+      bytes_in.add(in);
+      long micros = Math.max(0,nanos / 1000);
+      total_time.add(micros);
+      time_buckets.incrementAndGet(getBucket(micros));
+    }
+
+   void outputXml(IvyXmlWriter xw) {
+      xw.begin("METRIC");
+      xw.field("TYPE",metric_type);
+      xw.field("TARGET",metric_where);
+      xw.field("COMMAND",metric_command);
+      long ct = num_calls.sum();
+      xw.field("COUNT",ct);
+      xw.field("ERRORS",num_errors.sum());
+      xw.field("BYTESOUT",bytes_out.sum());
+      xw.field("BYTESIN",bytes_in.sum());
+      xw.field("TIME",total_time.sum());
+      xw.field("P50",getPercentile(ct,0.50));
+      xw.field("P90",getPercentile(ct,0.90));
+      xw.field("P99",getPercentile(ct,0.99));
+      for (int i = 0; i < NUM_BUCKETS; ++i) {
+         long v = time_buckets.get(i);
+         if (v == 0) continue;
+         xw.begin("BUCKET");
+         xw.field("LIMIT",getLimit(i));
+         xw.field("COUNT",v);
+         xw.end("BUCKET");
+       }
+      xw.end("METRIC");
+    }
+
+   private long getPercentile(long ct,double pct) {
+      if (ct == 0) return 0;
+      long want = (long) Math.ceil(ct * pct);
+      long sum = 0;
+      for (int i = 0; i < NUM_BUCKETS; ++i) {
+         sum += time_buckets.get(i);
+         if (sum >= want) return getLimit(i);
+       }
+      return getLimit(NUM_BUCKETS-1);
+    }
+
+   // bucket i holds times (in microseconds) below 2^i
+   private static int getBucket(long micros) {
+      int b = 64 - Long.numberOfLeadingZeros(micros);
+      return Math.min(b,NUM_BUCKETS-1);
+    }
+
+   private static long getLimit(int bucket) {
+      return 1L << bucket;
+    }
+
+}       // end of inner class MetricData
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Handler wrapper to record incoming messages                             */
+/*                                                                              */
+/********************************************************************************/
+
+private final class MeteredHandler implements DicontrolTransport.EventHandler {
+
+   private String handler_source;
+   private DicontrolTransport.EventHandler for_handler;
+
+   MeteredHandler(String source,DicontrolTransport.EventHandler hdlr) {
+      handler_source = source;
+      for_handler = hdlr;
+    }
+
+   @Override public void handleEvent(DicontrolEvent evt) {
+      String cmd = evt.getArgument();
+      if (cmd == null) cmd = "*";
+      String txt = evt.getText();
+      int len = (txt == null ? 0 : txt.length());
+      long start = System.nanoTime();
+      boolean ok = false;
+      try {
+         for_handler.handleEvent(evt);
+         ok = true;
+       }
+      finally {
+         noteHandler(handler_source,cmd,len,System.nanoTime() - start,ok);
+       }
+    }
+
+}       // end of inner class MeteredHandler
+
+
+}       // end of class DicontrolMetrics
+
+
+
+
+/* end of DicontrolMetrics.java */
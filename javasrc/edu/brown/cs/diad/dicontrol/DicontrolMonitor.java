@@ -23,23 +23,22 @@
 package edu.brown.cs.diad.dicontrol;
 
 import java.io.File;
-import java.util.HashMap;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 import org.w3c.dom.Element;
 
+import edu.brown.cs.diad.dianalysis.DianalysisManager;
+import edu.brown.cs.diad.dicore.DiadCancelToken;
 import edu.brown.cs.diad.dicore.DiadException;
 import edu.brown.cs.diad.ditest.DitestFactory;
 import edu.brown.cs.ivy.file.IvyLog;
-import edu.brown.cs.ivy.mint.MintArguments;
-import edu.brown.cs.ivy.mint.MintConstants;
-import edu.brown.cs.ivy.mint.MintControl;
-import edu.brown.cs.ivy.mint.MintDefaultReply;
-import edu.brown.cs.ivy.mint.MintHandler;
-import edu.brown.cs.ivy.mint.MintMessage;
 import edu.brown.cs.ivy.mint.MintConstants.CommandArgs;
-import edu.brown.cs.ivy.mint.MintConstants.MintSyncMode;
 import edu.brown.cs.ivy.xml.IvyXml;
 import edu.brown.cs.ivy.xml.IvyXmlWriter;
 
@@ -54,10 +53,24 @@ class DicontrolMonitor implements DicontrolConstants
 /********************************************************************************/
 
 private DicontrolMain	diad_control;
-private MintControl	mint_control;
-private Map<String,EvalData> eval_handlers;
+private DicontrolTransport message_transport;
+private DicontrolEvaluations eval_registry;
+private DicontrolCommandExecutor command_executor;
+private DicontrolBubblesCache bubbles_cache;
+private DicontrolServerHealth fait_health;
+private DicontrolServerHealth seede_health;
+private DicontrolMetrics message_metrics;
 
 private static Random   random_gen = new Random();
+private static ThreadLocal<StringWriter> message_buffer =
+   ThreadLocal.withInitial(StringWriter::new);
+
+private static final long DIAD_REPLY_TIMEOUT = 60000;
+private static final long BUBBLES_REPLY_TIMEOUT = 60000;
+private static final long FAIT_REPLY_TIMEOUT = 120000;
+private static final long FAIT_QUERY_TIMEOUT = 600000;
+private static final long SEEDE_REPLY_TIMEOUT = 300000;
+private static final int MAX_MESSAGE_BUFFER = 1024*1024;
 
 
  
@@ -70,18 +83,46 @@ private static Random   random_gen = new Random();
 DicontrolMonitor(DicontrolMain gm,String mintid)
 {
    diad_control = gm;
-   eval_handlers = new HashMap<>();
+   eval_registry = new DicontrolEvaluations(
+         gm.getProperty("Diad.eval.timeout",120000),
+         gm.getProperty("Diad.eval.reap",300000));
+   command_executor = new DicontrolCommandExecutor(gm);
+   String cache = gm.getProperty("Diad.bubbles.cache");
+   if (cache == null || Boolean.parseBoolean(cache)) {
+      bubbles_cache = new DicontrolBubblesCache();
+    }
+   else bubbles_cache = null;
+   // FAIT queries and analysis can legitimately run long; give them a larger maximum
+   fait_health = new DicontrolServerHealth(gm,"FAIT",FAIT_REPLY_TIMEOUT,true);
+   fait_health.setMaxTimeout(gm,"ANALYZE",FAIT_QUERY_TIMEOUT);
+   fait_health.setMaxTimeout(gm,"FLOWQUERY",FAIT_QUERY_TIMEOUT);
+   seede_health = new DicontrolServerHealth(gm,"SEEDE",SEEDE_REPLY_TIMEOUT,true);
+   message_metrics = new DicontrolMetrics();
+   String statsfile = gm.getProperty("Diad.stats.file");
+   if (statsfile != null) {
+      Runtime.getRuntime().addShutdownHook(new StatsDumper(new File(statsfile)));
+    }
+   Runtime.getRuntime().addShutdownHook(new PoolStopper());
    
-   mint_control = MintControl.create(mintid,MintSyncMode.ONLY_REPLIES);
-   mint_control.register("<BUBBLES DO='EXIT' />",new ExitHandler());
-   mint_control.register("<DIAD DO='_VAR_0' />",new CommandHandler());
-   mint_control.register("<BEDROCK TYPE='_VAR_0' />",new IDEHandler());
-   mint_control.register("<FAITEXEC TYPE='_VAR_0' />",new FaitHandler());
+   message_transport = DicontrolTransport.createTransport(gm,mintid);
+   message_transport.register("<BUBBLES DO='EXIT' />","EXIT",new ExitHandler());
+   message_transport.register("<DIAD DO='_VAR_0' />","DIAD",
+         message_metrics.meter("DIAD",new CommandHandler()));
+   message_transport.register("<BEDROCK TYPE='_VAR_0' />","IDE",
+         message_metrics.meter("IDE",new IDEHandler()));
+   message_transport.register("<FAITEXEC TYPE='_VAR_0' />","FAIT",
+         message_metrics.meter("FAIT",new FaitHandler()));
    
    IvyLog.logD("DICONTROL","Listening for messages on " + mintid);
 }
 
 
+void start()
+{
+   message_transport.start();
+}
+
+
 /********************************************************************************/
 /*                                                                              */
 /*      Command handler                                                         */
@@ -108,8 +149,11 @@ private String processCommand(String cmd,Element xml) throws DiadException
             rid = "DIAD_" + random_gen.nextInt(1000000);
           }
          CommandProcessor cp = new CommandProcessor(dcmd,rid);
+         if (!command_executor.submit(dcmd.getCommandName(),cp)) {
+            throw new DiadException("Too many pending commands; " +
+                  dcmd.getCommandName() + " rejected");
+          }
          xw.field("RID",rid);
-         cp.start();
        }
       
       xw.end("RESULT");
@@ -121,12 +165,14 @@ private String processCommand(String cmd,Element xml) throws DiadException
 
 
 
-private final class CommandHandler implements MintHandler {
+private final class CommandHandler implements DicontrolTransport.EventHandler {
 
-   @Override public void receive(MintMessage msg,MintArguments args) {
-      IvyLog.logD("DICONTROL","PROCESS MSG COMMAND " + msg.getText());
-      String cmd = args.getArgument(0);
-      Element xml = msg.getXml();
+   @Override public void handleEvent(DicontrolEvent evt) {
+      if (DicontrolMain.isDebugLogging()) {
+         IvyLog.logD("DICONTROL","PROCESS MSG COMMAND " + evt.getText());
+       }
+      String cmd = evt.getArgument();
+      Element xml = evt.getXml();
       String rslt = null;
       try {
          rslt = processCommand(cmd,xml);
@@ -149,8 +195,10 @@ private final class CommandHandler implements MintHandler {
          rslt = xw.toString();
          xw.close();
        }
-      IvyLog.logD("DIAD","Reply for " + cmd + ": " + rslt);
-      msg.replyTo(rslt);
+      if (DicontrolMain.isDebugLogging()) {
+         IvyLog.logD("DIAD","Reply for " + cmd + ": " + rslt);
+       }
+      evt.replyTo(rslt);
     }
    
 }       // end of inner class CommandHandler
@@ -162,13 +210,12 @@ private final class CommandHandler implements MintHandler {
 /*                                                                              */
 /********************************************************************************/
 
-private class CommandProcessor extends Thread {
+private class CommandProcessor implements Runnable {
 
    private DiadCommand for_command;
    private String reply_id;
    
    CommandProcessor(DiadCommand cmd,String rid) {
-      super("DICONTROL_" + cmd.getCommandName() + "_" + rid);
       for_command = cmd;
       reply_id = rid;
     }
@@ -181,8 +228,9 @@ private class CommandProcessor extends Thread {
          for_command.process(xw);
          xw.end("RESULT");
          xw.end("DIADREPLY");
-         IvyLog.logD("DIAD","Send reply " + xw.toString());
-         mint_control.send(xw.toString());
+         String msg = xw.toString();
+         if (DicontrolMain.isDebugLogging()) IvyLog.logD("DIAD","Send reply " + msg);
+         message_transport.send(msg);
        }
       catch (Throwable t) {
          IvyXmlWriter xw = new IvyXmlWriter();
@@ -192,8 +240,9 @@ private class CommandProcessor extends Thread {
          xw.textElement("MESSAGE",t);
          xw.end("ERROR");
          xw.end("DIADREPLY");
-         IvyLog.logD("DIAD","Send error reply " + xw.toString());
-         mint_control.send(xw.toString());
+         String msg = xw.toString();
+         if (DicontrolMain.isDebugLogging()) IvyLog.logD("DIAD","Send error reply " + msg);
+         message_transport.send(msg);
          xw.close();
        }
     }
@@ -218,33 +267,15 @@ boolean sendPing()
 
 Element sendDiadMessage(String cmd,CommandArgs args,String cnts)
 {
-   MintDefaultReply rply = new MintDefaultReply();
-   String msg = null;
-   
-   try (IvyXmlWriter xw = new IvyXmlWriter()) {
-      xw.begin("DIADREPLY");
-      xw.field("DO",cmd);
-      if (args != null) {
-         for (Map.Entry<String,Object> ent : args.entrySet()) {
-            xw.field(ent.getKey(),ent.getValue());
-          }
-       }
-      if (cnts != null) {
-         xw.xmlText(cnts);
-       }
-      xw.end("DIADREPLY");
-      msg = xw.toString();
-    }
-   
-   IvyLog.logD("DICONTROL","Send DIAD message: " + msg);
-   
-   mint_control.send(msg,rply,MintControl.MINT_MSG_FIRST_NON_NULL);
-   
-   Element rslt = rply.waitForXml(60000);
-   
-   IvyLog.logD("DICONTROL","Reply from message: " + IvyXml.convertXmlToString(rslt));
+   return DicontrolReply.waitForReply(sendDiadMessageAsync(cmd,args,cnts));
+}
+
+
+CompletableFuture<Element> sendDiadMessageAsync(String cmd,CommandArgs args,String cnts)
+{
+   String msg = buildMessage("DIADREPLY",cmd,args,cnts);
    
-   return rslt;
+   return sendMessage("DIAD",cmd,msg,DIAD_REPLY_TIMEOUT);
 }
 
 
@@ -257,19 +288,19 @@ Element sendDiadMessage(String cmd,CommandArgs args,String cnts)
 
 void pongEclipse()
 {
-   mint_control.register("<BEDROCK TYPE='PING' />",new BubblesPingHandler());
+   message_transport.register("<BEDROCK TYPE='PING' />","PING",new BubblesPingHandler());
    Runtime.getRuntime().addShutdownHook(new EclipseStopper());
 }
 
 
 boolean pingEclipse()
 {
-   MintDefaultReply rply = new MintDefaultReply();
+   DicontrolReply rply = new DicontrolReply(500);
    String msg = "<BUBBLES DO='PING' />";
    IvyLog.logD("DICONTROL","Send to bubbles: " + msg);
-   mint_control.send(msg,rply,MintControl.MINT_MSG_FIRST_NON_NULL);
+   message_transport.send(msg,rply);
 
-   String r = rply.waitForString(500);
+   Element r = DicontrolReply.waitForReply(rply.getFuture());
 
    return r != null;
 }
@@ -277,48 +308,50 @@ boolean pingEclipse()
 
 Element sendBubblesMessage(String cmd,CommandArgs args,String cnts)
 {
-   MintDefaultReply rply = new MintDefaultReply();
-   IvyXmlWriter xw = new IvyXmlWriter();
-   xw.begin("BUBBLES");
-   xw.field("DO",cmd);
-   if (args != null) {
-      for (Map.Entry<String,Object> ent : args.entrySet()) {
-	 xw.field(ent.getKey(),ent.getValue());
-       }
-    }
-   if (cnts != null) {
-      xw.xmlText(cnts);
-    }
-   xw.end("BUBBLES");
-   
-   String msg = xw.toString();
-   xw.close();
-   
-   IvyLog.logD("DICONTROL","Send to bubbles: " + msg);
+   return DicontrolReply.waitForReply(sendBubblesMessageAsync(cmd,args,cnts));
+}
+
 
-   mint_control.send(msg,rply,MintControl.MINT_MSG_FIRST_NON_NULL);
+CompletableFuture<Element> sendBubblesMessageAsync(String cmd,CommandArgs args,String cnts)
+{
+   String msg = buildMessage("BUBBLES",cmd,args,cnts);
    
-   Element rslt = rply.waitForXml(60000);
+   DicontrolBubblesCache.QueryKind kind = null;
+   if (bubbles_cache != null) kind = bubbles_cache.getQueryKind(cmd,args);
+   if (kind == null) return sendMessage("bubbles",cmd,msg,BUBBLES_REPLY_TIMEOUT);
    
-   IvyLog.logD("DICONTROL","Reply from bubbles: " + IvyXml.convertXmlToString(rslt));
+   String key = bubbles_cache.getKey(cmd,args,cnts);
+   Element rslt = bubbles_cache.lookup(key);
+   if (rslt != null) {
+      IvyLog.logD("DICONTROL","Using cached bubbles reply for " + cmd);
+      return CompletableFuture.completedFuture(rslt);
+    }
    
-   return rslt;
+   long gen = bubbles_cache.getGeneration();
+   DicontrolBubblesCache.QueryKind fkind = kind;
+   CompletableFuture<Element> fut = sendMessage("bubbles",cmd,msg,BUBBLES_REPLY_TIMEOUT);
+   
+   // store before the caller sees the reply; the DOM can't be read by two threads
+   return fut.thenApply(r -> {
+      bubbles_cache.store(key,fkind,args,gen,r);
+      return r;
+    });
 }
 
 
-private final class ExitHandler implements MintHandler {
+private final class ExitHandler implements DicontrolTransport.EventHandler {
 
-   @Override public void receive(MintMessage msg,MintArguments args) {
+   @Override public void handleEvent(DicontrolEvent evt) {
       System.exit(0);
     }
 
 }	// end of inner class ExitHandler
 
 
-private final class BubblesPingHandler implements MintHandler {
+private final class BubblesPingHandler implements DicontrolTransport.EventHandler {
 
-   @Override public void receive(MintMessage msg,MintArguments args) {
-      msg.replyTo("<PONG/>");
+   @Override public void handleEvent(DicontrolEvent evt) {
+      evt.replyTo("<PONG/>");
     }
 
 }	// end of inner class ExitHandler
@@ -337,6 +370,23 @@ private final class EclipseStopper extends Thread {
 }       // end of inner class EclipseStopper
 
 
+// both EXIT paths go through System.exit, so this covers them as well
+
+private final class PoolStopper extends Thread {
+
+   PoolStopper() {
+      super("DIAD Pool Stopper");
+    }
+
+   @Override public void run() {
+      command_executor.shutdown();
+      DicontrolCandidateScheduler sched = diad_control.getCandidateScheduler();
+      if (sched != null) sched.shutdown();
+    }
+
+}       // end of inner class PoolStopper
+
+
 
 /********************************************************************************/
 /*                                                                              */
@@ -346,11 +396,25 @@ private final class EclipseStopper extends Thread {
 
 public Element sendFaitMessage(String cmd,CommandArgs args,String cnts)
 {
-   MintDefaultReply rply = new MintDefaultReply();
-   IvyXmlWriter xw = new IvyXmlWriter();
-   xw.begin("FAIT");
-   xw.field("DO",cmd);
-   
+   return DicontrolReply.waitForReply(sendFaitMessageAsync(cmd,args,cnts,null));
+}
+
+
+Element sendFaitMessage(String cmd,CommandArgs args,String cnts,DiadCancelToken tok)
+{
+   return DicontrolReply.waitForReply(sendFaitMessageAsync(cmd,args,cnts,tok));
+}
+
+
+CompletableFuture<Element> sendFaitMessageAsync(String cmd,CommandArgs args,String cnts)
+{
+   return sendFaitMessageAsync(cmd,args,cnts,null);
+}
+
+
+CompletableFuture<Element> sendFaitMessageAsync(String cmd,CommandArgs args,String cnts,
+      DiadCancelToken tok)
+{
    if (args == null) {
       args = new CommandArgs("SID","*");
     }
@@ -358,35 +422,11 @@ public Element sendFaitMessage(String cmd,CommandArgs args,String cnts)
       args.put("SID","*");
     }
    
-   for (Map.Entry<String,Object> ent : args.entrySet()) {
-      xw.field(ent.getKey(),ent.getValue());
-    }
+   String msg = buildMessage("FAIT",cmd,args,cnts);
+   CompletableFuture<Element> rslt = sendServerMessage(fait_health,cmd,msg,tok);
    
-   if (cnts != null) {
-      xw.xmlText(cnts);
-    }
-   xw.end("FAIT");
-   String msg = xw.toString();
-   xw.close();
-   
-   IvyLog.logD("DICONTROL","Send to FAIT: " + msg);
-   
-   mint_control.send(msg,rply,MintConstants.MINT_MSG_FIRST_NON_NULL);
-   
-   Element rslt = rply.waitForXml(0);
-   
-   IvyLog.logD("DICONTROL","Reply from FAIT: " + IvyXml.convertXmlToString(rslt));
-   if (rslt == null && (cmd.equals("START") || cmd.equals("BEGIN"))) {
-      MintDefaultReply prply = new MintDefaultReply();
-      mint_control.send("<FAIT DO='PING' SID='*' />",rply,
-            MintControl.MINT_MSG_FIRST_NON_NULL);
-      String prslt = prply.waitForString(3000);
-      if (prslt == null) {
-	 diad_control.getTestManager().startFait();  
-	 rply = new MintDefaultReply();
-	 mint_control.send(msg,rply,MintConstants.MINT_MSG_FIRST_NON_NULL);
-	 rslt = rply.waitForXml(0);
-       }
+   if (cmd.equals("START") || cmd.equals("BEGIN")) {
+      rslt = rslt.thenCompose(r -> checkRestart(r,fait_health,cmd,msg));
     }
    
    return rslt;
@@ -402,67 +442,221 @@ public Element sendFaitMessage(String cmd,CommandArgs args,String cnts)
 
 Element sendSeedeMessage(String id,String cmd,CommandArgs args,String cnts)
 {
-   MintDefaultReply rply = new MintDefaultReply();
-   IvyXmlWriter xw = new IvyXmlWriter();
-   xw.begin("SEEDE");
-   xw.field("DO",cmd);
-   
+   return DicontrolReply.waitForReply(sendSeedeMessageAsync(id,cmd,args,cnts,null));
+}
+
+
+Element sendSeedeMessage(String id,String cmd,CommandArgs args,String cnts,
+      DiadCancelToken tok)
+{
+   return DicontrolReply.waitForReply(sendSeedeMessageAsync(id,cmd,args,cnts,tok));
+}
+
+
+CompletableFuture<Element> sendSeedeMessageAsync(String id,String cmd,
+      CommandArgs args,String cnts)
+{
+   return sendSeedeMessageAsync(id,cmd,args,cnts,null);
+}
+
+
+CompletableFuture<Element> sendSeedeMessageAsync(String id,String cmd,
+      CommandArgs args,String cnts,DiadCancelToken tok)
+{
    if (args == null) args = new CommandArgs();
    if (id != null)  args.put("SID",id);
    else if (args.get("SID") == null) args.put("SID","*");
-   for (Map.Entry<String,Object> ent : args.entrySet()) {
-      xw.field(ent.getKey(),ent.getValue());
+   
+   String msg = buildMessage("SEEDE",cmd,args,cnts);
+   CompletableFuture<Element> rslt = sendServerMessage(seede_health,cmd,msg,tok);
+   
+   if (cmd.equals("START") || cmd.equals("BEGIN")) {
+      rslt = rslt.thenCompose(r -> checkRestart(r,seede_health,cmd,msg));
+    }
+   
+   return rslt;
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Generic message sending                                                 */
+/*                                                                              */
+/********************************************************************************/
+
+static String buildMessage(String elt,String cmd,CommandArgs args,String cnts)
+{
+   // reuse a per-thread buffer to avoid regrowing it for large messages;
+   // MintControl.send takes a String, so the message itself is still copied once
+   StringWriter sw = message_buffer.get();
+   StringBuffer buf = sw.getBuffer();
+   buf.setLength(0);
+   
+   try (IvyXmlWriter xw = new IvyXmlWriter(sw)) {
+      xw.begin(elt);
+      xw.field("DO",cmd);
+      if (args != null) {
+         for (Map.Entry<String,Object> ent : args.entrySet()) {
+            xw.field(ent.getKey(),ent.getValue());
+          }
+       }
+      if (cnts != null) {
+         xw.xmlText(cnts);
+       }
+      xw.end(elt);
+      xw.flush();
     }
    
-   if (cnts != null) {
-      xw.xmlText(cnts);
+   String msg = buf.toString();
+   if (buf.capacity() > MAX_MESSAGE_BUFFER) message_buffer.remove();
+   
+   return msg;
+}
+
+
+private CompletableFuture<Element> sendMessage(String what,String cmd,String msg,
+      long timeout)
+{
+   return sendMessage(what,cmd,msg,timeout,null);
+}
+
+
+private CompletableFuture<Element> sendMessage(String what,String cmd,String msg,
+      long timeout,DiadCancelToken tok)
+{
+   boolean dbg = DicontrolMain.isDebugLogging();
+   if (dbg) IvyLog.logD("DICONTROL","Send to " + what + ": " + msg);
+   
+   long start = System.nanoTime();
+   // charge the call to the candidate making it, if any
+   DicontrolTimeline tl = DicontrolTimeline.getCurrent();
+   long tlstart = (tl == null ? 0 : tl.getTime());
+   DicontrolReply rply = new DicontrolReply(timeout);
+   // cancelling the token completes the reply so waiters return at once
+   if (tok != null) tok.track(rply.getFuture());
+   message_transport.send(msg,rply);
+   
+   return rply.getFuture().whenComplete((r,t) -> {
+      message_metrics.noteSend(what,cmd,msg.length(),rply.getReplySize(),
+            System.nanoTime() - start,r != null);
+      if (tl != null) {
+         tl.noteCall(what,cmd,tlstart,msg.length(),rply.getReplySize(),r != null);
+       }
+      if (dbg) IvyLog.logD("DICONTROL","Reply from " + what + ": " + rply.getReplyText());
+    });
+}
+
+
+private CompletableFuture<Element> sendServerMessage(DicontrolServerHealth health,
+      String cmd,String msg,DiadCancelToken tok)
+{
+   String what = health.getName();
+   if (tok != null && tok.isCancelled()) {
+      return CompletableFuture.completedFuture(null);
+    }
+   if (!health.allowRequest(cmd)) {
+      IvyLog.logD("DICONTROL","Server " + what + " unavailable; skipping " + cmd);
+      return CompletableFuture.completedFuture(null);
     }
    
-   xw.end("SEEDE");
-   String msg = xw.toString();
-   xw.close();
+   long start = System.currentTimeMillis();
+   long timeout = health.getTimeout(cmd);
+   CompletableFuture<Element> rslt = sendMessage(what,cmd,msg,timeout,tok);
+   
+   return rslt.whenComplete((r,t) -> {
+      // a cancelled request says nothing about the server
+      if (tok != null && tok.isCancelled()) return;
+      long time = System.currentTimeMillis() - start;
+      if (health.noteResult(cmd,time,timeout,r != null) && !message_transport.isReplay()) {
+         // only restart a server that doesn't answer a PING either
+         pingServer(health).thenAcceptAsync(p -> {
+            if (!p) restartServer(health);
+          });
+       }
+    });
+}
+
+
+private CompletableFuture<Boolean> pingServer(DicontrolServerHealth health)
+{
+   String what = health.getName();
+   String ping = "<" + what + " DO='PING' SID='*' />";
+   DicontrolReply prply = new DicontrolReply(3000);
+   message_transport.send(ping,prply);
    
-   IvyLog.logD("DICONTROL","Send to SEEDE: " + msg);
+   return prply.getFuture().thenApply(p -> p != null);
+}
+
+
+private CompletableFuture<Element> checkRestart(Element rslt,DicontrolServerHealth health,
+      String cmd,String msg)
+{
+   // restart the server if it is not there; done off the reply thread
    
-   mint_control.send(msg,rply,MintConstants.MINT_MSG_FIRST_NON_NULL);
+   if (rslt != null) return CompletableFuture.completedFuture(rslt);
    
-   Element rslt = rply.waitForXml(300000);
+   // a replayed session has no servers to check or start; the null was recorded
+   if (message_transport.isReplay()) return CompletableFuture.completedFuture(rslt);
    
-   IvyLog.logD("DICONTROL","Reply from SEEDE: " + IvyXml.convertXmlToString(rslt));
-   if (rslt == null && (cmd.equals("START") || cmd.equals("BEGIN"))) {
-      MintDefaultReply prply = new MintDefaultReply();
-      mint_control.send("<SEEDE DO='PING' SID='*' />",rply,MintConstants.MINT_MSG_FIRST_NON_NULL);
-      String prslt = prply.waitForString(3000);
-      if (prslt == null) {
-	 diad_control.getTestManager().startSeede();
-	 rply = new MintDefaultReply();
-	 mint_control.send(msg,rply,MintConstants.MINT_MSG_FIRST_NON_NULL);
-	 rslt = rply.waitForXml(0);
-       }
-    }
+   return pingServer(health).thenComposeAsync(p -> {
+      if (p) return CompletableFuture.completedFuture((Element) null);
+      restartServer(health);
+      return sendServerMessage(health,cmd,msg,null);
+    });
+}
+
+
+private void restartServer(DicontrolServerHealth health)
+{
+   IvyLog.logI("DICONTROL","Restarting " + health.getName());
    
-   return rslt;
+   if (health == fait_health) diad_control.getTestManager().startFait();
+   else diad_control.getTestManager().startSeede();
+}
+
+
+DiadServerState getServerState(String what)
+{
+   switch (what) {
+      case "FAIT" :
+         return fait_health.getState();
+      case "SEEDE" :
+         return seede_health.getState();
+      default :
+         return null;
+    }
 }
 
 
+void outputServerXml(IvyXmlWriter xw)
+{
+   fait_health.outputXml(xw);
+   seede_health.outputXml(xw);
+}
+
+
+
 /********************************************************************************/
 /*                                                                              */
 /*      Handle messages from the back end                                       */
 /*                                                                              */
 /********************************************************************************/
 
-protected class IDEHandler implements MintHandler {
+protected class IDEHandler implements DicontrolTransport.EventHandler {
 
-   @Override public void receive(MintMessage msg,MintArguments args) {
-      String cmd = args.getArgument(0);
-      Element e = msg.getXml();
+   @Override public void handleEvent(DicontrolEvent evt) {
+      String cmd = evt.getArgument();
+      Element e = evt.getXml();
       
       switch (cmd) {
          case "ELISION" :
             return;
        }
       
-      IvyLog.logD("DICONTROL","Message from IDE " + cmd + " " + msg.getText());
+      if (DicontrolMain.isDebugLogging()) {
+         IvyLog.logD("DICONTROL","Message from IDE " + cmd + " " + evt.getText());
+       }
       
       try {
          switch (cmd) {
@@ -475,30 +669,40 @@ protected class IDEHandler implements MintHandler {
             case "NAMES" :
             case "ENDNAMES" :
             case "PROGRESS" :
-            case "BUILDDONE" :
             case "FILECHANGE" :
+               break;
+            case "BUILDDONE" :
+               if (bubbles_cache != null) bubbles_cache.handleBuildDone(e);
+               break;
             case "PROJECTDATA" :
             case "PROJECTOPEN" :
+               if (bubbles_cache != null) bubbles_cache.handleProjectData(e);
                break;
             case "EDIT" :
-               msg.replyTo();
+               evt.replyTo();
+               if (bubbles_cache != null) bubbles_cache.handleEdit(e);
                File f = new File(IvyXml.getAttrString(e,"FILE"));
                diad_control.getRunManager().noteFileEdited(f);  
                break;
             case "RESOURCE" :
                for (Element re : IvyXml.children(e,"DELTA")) {
+                  if (bubbles_cache != null) bubbles_cache.handleResourceChange(re);
                   diad_control.getRunManager().handleResourceChange(re);
+                  DianalysisManager am = diad_control.getAnalysisManager();
+                  if (am != null) am.handleResourceChange(re);
                 }
                break;
             case "CONSOLE" :
             case "BREAKEVENT" :
-               msg.replyTo();
+               evt.replyTo();
                break;
             case "RUNEVENT" :
                String resp = null;
                for (Element re : IvyXml.children(e,"RUNEVENT")) {
-                  IvyLog.logD("DICONTROL","Handle run event " + 
-                        IvyXml.convertXmlToString(re));
+                  if (DicontrolMain.isDebugLogging()) {
+                     IvyLog.logD("DICONTROL","Handle run event " + 
+                           IvyXml.convertXmlToString(re));
+                   }
                   diad_control.getRunManager().handleRunEvent(re); 
                   DitestFactory tester = diad_control.checkTestManager();  
                   if (tester != null) {
@@ -506,8 +710,8 @@ protected class IDEHandler implements MintHandler {
                      resp = "<OK/>";
                    }
                 }
-               if (resp == null) msg.replyTo();
-               else msg.replyTo(resp);
+               if (resp == null) evt.replyTo();
+               else evt.replyTo(resp);
                break;
             case "PING" :
             case "PING1" :
@@ -515,18 +719,14 @@ protected class IDEHandler implements MintHandler {
             case "PING3" :
             case "PING4" :
             case "PING5" :
-               msg.replyTo("<PONG/>");
+               evt.replyTo("<PONG/>");
                break;
             case "EVALUATION" :
                String eid = IvyXml.getAttrString(e,"ID");
                if (eid != null && eid.startsWith("DIAD")) {
-                  EvalData ed = new EvalData(e);
-                  synchronized (eval_handlers) {
-                     eval_handlers.put(eid,ed);
-                     eval_handlers.notifyAll();
-                   }
+                  eval_registry.noteResult(eid,e);
                 }
-               msg.replyTo();
+               evt.replyTo();
                break;
             case "STOP" :
                IvyLog.logI("DICONTROL","STOP received from eclipse");
@@ -538,7 +738,7 @@ protected class IDEHandler implements MintHandler {
        }
       catch (Throwable t) {
          IvyLog.logE("DICONTROL","Unknown eclipse message " + cmd,t);
-         msg.replyTo();
+         evt.replyTo();
        }
     }
 
@@ -552,12 +752,14 @@ protected class IDEHandler implements MintHandler {
 /*                                                                              */
 /********************************************************************************/
 
-private final class FaitHandler implements MintHandler {
+private final class FaitHandler implements DicontrolTransport.EventHandler {
    
-   @Override public void receive(MintMessage msg,MintArguments args) {
-      IvyLog.logD("DICONTROL","Fait message: " + msg.getText());
-      String type = args.getArgument(0);
-      Element xml = msg.getXml();
+   @Override public void handleEvent(DicontrolEvent evt) {
+      if (DicontrolMain.isDebugLogging()) {
+         IvyLog.logD("DICONTROL","Fait message: " + evt.getText());
+       }
+      String type = evt.getArgument();
+      Element xml = evt.getXml();
       String rslt = null;
       try {
          switch (type) {
@@ -568,13 +770,13 @@ private final class FaitHandler implements MintHandler {
                IvyLog.logE("DICONTROL","Unknown command " + type + " from Fait");
                break;
             case "ERROR" :
-               throw new Error("Fait error: " + msg.getText());
+               throw new Error("Fait error: " + evt.getText());
           }
        }
       catch (Throwable e) {
          IvyLog.logE("DICONTROL","Error processing command",e);
        }
-      msg.replyTo(rslt);
+      evt.replyTo(rslt);
     }
    
 }       // end of inner class FaitHandler
@@ -583,41 +785,72 @@ private final class FaitHandler implements MintHandler {
 
 /********************************************************************************/
 /*                                                                              */
-/*      Handle evaluations                                                      */
+/*      Statistics                                                              */
 /*                                                                              */
 /********************************************************************************/
 
-public Element waitForEvaluation(String id)
+void outputStatistics(IvyXmlWriter xw)
 {
-   synchronized (eval_handlers) {
-      for ( ; ; ) {
-	 EvalData ed = eval_handlers.remove(id);
-	 if (ed != null) {
-	    return ed.getResult();
-	  }
-	 try {
-	    eval_handlers.wait(5000);
-	  }
-	 catch (InterruptedException e) { }
-       }
-    }
+   xw.begin("STATS");
+   xw.field("TIME",System.currentTimeMillis());
+   message_metrics.outputXml(xw);
+   command_executor.outputXml(xw);
+   diad_control.getCandidateScheduler().outputXml(xw);
+   diad_control.getUpdatePublisher().outputXml(xw);
+   diad_control.getAdmission().outputXml(xw);
+   DianalysisManager am = diad_control.getAnalysisManager();
+   if (am != null) am.outputXml(xw);
+   outputServerXml(xw);
+   if (bubbles_cache != null) bubbles_cache.outputXml(xw);
+   DicontrolResultCache rc = diad_control.getResultCache();
+   if (rc != null) rc.outputXml(xw);
+   diad_control.outputCandidates(xw);
+   xw.end("STATS");
 }
 
 
+private final class StatsDumper extends Thread {
 
-private static class EvalData {
-
-   private Element eval_result;
+   private File output_file;
    
-   EvalData(Element rslt) {
-      eval_result = rslt;
+   StatsDumper(File f) {
+      super("DIAD Statistics Dumper");
+      output_file = f;
     }
    
-   Element getResult() {
-      return eval_result;
+   @Override public void run() {
+      try (IvyXmlWriter xw = new IvyXmlWriter();
+            FileWriter fw = new FileWriter(output_file)) {
+         outputStatistics(xw);
+         fw.write(xw.toString());
+       }
+      catch (IOException e) {
+         IvyLog.logE("DICONTROL","Problem writing statistics to " + output_file,e);
+       }
     }
+   
+}       // end of inner class StatsDumper
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Handle evaluations                                                      */
+/*                                                                              */
+/********************************************************************************/
+
+public Element waitForEvaluation(String id)
+{
+   return eval_registry.waitFor(id);
+}
+
+
+public Map<String,Element> waitForEvaluations(Collection<String> ids)
+{
+   return eval_registry.waitFor(ids);
+}
+
 
-}	// end of inner class EvalData
 
 }	// end of class DicontrolMonitor
 
@@ -0,0 +1,151 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolReply.java                                             */
+/*                                                                              */
+/*      Non-blocking reply handler for outbound messages                        */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.w3c.dom.Element;
+
+import edu.brown.cs.ivy.mint.MintMessage;
+import edu.brown.cs.ivy.mint.MintReply;
+import edu.brown.cs.ivy.xml.IvyXml;
+
+class DicontrolReply implements MintReply, DicontrolConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private CompletableFuture<Element> reply_future;
+private volatile String reply_text;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DicontrolReply(long timeout)
+{
+   reply_future = new CompletableFuture<>();
+   reply_text = null;
+   if (timeout > 0) {
+      reply_future.completeOnTimeout(null,timeout,TimeUnit.MILLISECONDS);
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Access methods                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+CompletableFuture<Element> getFuture()          { return reply_future; }
+
+String getReplyText()                           { return reply_text; }
+
+int getReplySize()
+{
+   String txt = reply_text;
+   return (txt == null ? 0 : txt.length());
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Reply handling                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+@Override public void handleReply(MintMessage msg,MintMessage rply)
+{
+   if (rply == null) return;
+
+   Element xml = rply.getXml();
+   if (xml != null) {
+      reply_text = rply.getText();
+      reply_future.complete(xml);
+    }
+}
+
+
+void noteReply(String text)
+{
+   if (text == null) {
+      reply_future.complete(null);
+      return;
+    }
+
+   reply_text = text;
+   reply_future.complete(IvyXml.convertStringToXml(text));
+}
+
+
+@Override public void handleReplyDone(MintMessage msg)
+{
+   reply_future.complete(null);
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Wait for a future reply, treating failure as no reply                   */
+/*                                                                              */
+/********************************************************************************/
+
+static Element waitForReply(CompletableFuture<Element> fut)
+{
+   if (fut == null) return null;
+
+   try {
+      return fut.get();
+    }
+   catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+   catch (ExecutionException e) { }
+   catch (CancellationException e) { }
+
+   return null;
+}
+
+
+}       // end of class DicontrolReply
+
+
+
+
+/* end of DicontrolReply.java */
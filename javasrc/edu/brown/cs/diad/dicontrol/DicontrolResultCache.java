@@ -0,0 +1,336 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolResultCache.java                                       */
+/*                                                                              */
+/*      On-disk cache of candidate results across sessions                      */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.w3c.dom.Element;
+
+import edu.brown.cs.diad.dicore.DiadLocation;
+import edu.brown.cs.diad.dicore.DiadConstants.DiadAnalysisFileMode;
+import edu.brown.cs.diad.dicore.DiadStackFrame;
+import edu.brown.cs.diad.dicore.DiadSymptom;
+import edu.brown.cs.ivy.file.IvyFile;
+import edu.brown.cs.ivy.file.IvyLog;
+import edu.brown.cs.ivy.xml.IvyXml;
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+class DicontrolResultCache implements DicontrolConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private DicontrolMain   diad_control;
+private File            cache_directory;
+private AtomicInteger   hit_count;
+private AtomicInteger   miss_count;
+private AtomicInteger   stale_count;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DicontrolResultCache(DicontrolMain ctrl,File dir)
+{
+   diad_control = ctrl;
+   cache_directory = dir;
+   hit_count = new AtomicInteger();
+   miss_count = new AtomicInteger();
+   stale_count = new AtomicInteger();
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Lookup methods                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+CachedResult lookup(DiadSymptom symp,String sig,DiadAnalysisFileMode mode)
+{
+   String key = getKey(symp,sig,mode);
+   File f = getCacheFile(key);
+   if (f == null || !f.exists()) {
+      miss_count.incrementAndGet();
+      return null;
+    }
+   
+   Element xml = null;
+   try {
+      xml = IvyXml.convertStringToXml(IvyFile.loadFile(f));
+    }
+   catch (IOException e) { }
+   if (xml == null || !key.equals(IvyXml.getAttrString(xml,"KEY"))) {
+      miss_count.incrementAndGet();
+      return null;
+    }
+   
+   // any change to a source file involved invalidates the result
+   for (Element fe : IvyXml.children(xml,"FILE")) {
+      File sf = new File(IvyXml.getAttrString(fe,"NAME"));
+      String hash = IvyXml.getAttrString(fe,"HASH");
+      if (hash == null || !hash.equals(getFileHash(sf))) {
+         IvyLog.logD("DICONTROL","Cached result for " + sig + " is stale: " + sf);
+         stale_count.incrementAndGet();
+         f.delete();
+         return null;
+       }
+    }
+   
+   hit_count.incrementAndGet();
+   
+   return new CachedResult(xml);
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Storage methods                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+void store(DiadSymptom symp,String sig,DiadAnalysisFileMode mode,
+      Collection<File> files,Collection<DiadLocation> locs,
+      List<DiadStackFrame> frames,DiadStackFrame start)
+{
+   String key = getKey(symp,sig,mode);
+   File f = getCacheFile(key);
+   int idx = frames.indexOf(start);
+   if (f == null || idx < 0) return;
+   
+   // FAIT's results depend on every file it was given, not just the stack
+   Map<String,String> hashes = new TreeMap<>();
+   for (File sf : files) {
+      addFileHash(sf,hashes);
+    }
+   for (DiadStackFrame frm : frames) {
+      addFileHash(frm.getSourceFile(),hashes);
+    }
+   for (DiadLocation loc : locs) {
+      addFileHash(loc.getFile(),hashes);
+    }
+   if (hashes.containsValue(null)) return;
+   
+   IvyXmlWriter xw = new IvyXmlWriter();
+   xw.begin("DIADRESULT");
+   xw.field("KEY",key);
+   xw.field("TIME",System.currentTimeMillis());
+   symp.outputXml(xw);
+   for (Map.Entry<String,String> ent : hashes.entrySet()) {
+      xw.begin("FILE");
+      xw.field("NAME",ent.getKey());
+      xw.field("HASH",ent.getValue());
+      xw.end("FILE");
+    }
+   for (DiadLocation loc : locs) {
+      loc.outputXml(xw);
+    }
+   xw.begin("START");
+   xw.field("INDEX",idx);
+   xw.field("CLASS",start.getClassName());
+   xw.field("METHOD",start.getMethodName());
+   xw.field("LINE",start.getLineNumber());
+   xw.end("START");
+   xw.end("DIADRESULT");
+   String txt = xw.toString();
+   xw.close();
+   
+   // write then rename so a concurrent reader never sees a partial file
+   cache_directory.mkdirs();
+   File tmp = new File(f.getPath() + ".tmp");
+   try (FileWriter fw = new FileWriter(tmp)) {
+      fw.write(txt);
+    }
+   catch (IOException e) {
+      IvyLog.logE("DICONTROL","Problem writing result cache " + tmp,e);
+      tmp.delete();
+      return;
+    }
+   if (!tmp.renameTo(f)) tmp.delete();
+}
+
+
+private void addFileHash(File f,Map<String,String> hashes)
+{
+   if (f == null || hashes.containsKey(f.getPath())) return;
+   
+   hashes.put(f.getPath(),getFileHash(f));
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Statistics                                                              */
+/*                                                                              */
+/********************************************************************************/
+
+void outputXml(IvyXmlWriter xw)
+{
+   xw.begin("RESULTCACHE");
+   xw.field("HITS",hit_count.get());
+   xw.field("MISSES",miss_count.get());
+   xw.field("STALE",stale_count.get());
+   xw.end("RESULTCACHE");
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Utility methods                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private static String getKey(DiadSymptom symp,String sig,DiadAnalysisFileMode mode)
+{
+   StringBuffer buf = new StringBuffer();
+   buf.append(mode);
+   buf.append(":");
+   buf.append(symp.getSymptomType());
+   buf.append(":");
+   buf.append(symp.getSymptomItem());
+   buf.append(":");
+   buf.append(symp.getSymptomOperator());
+   buf.append(":");
+   buf.append(symp.getTargetValue());
+   buf.append("@");
+   buf.append(sig);
+   
+   return buf.toString();
+}
+
+
+private File getCacheFile(String key)
+{
+   String hash = getHash(key.getBytes());
+   if (hash == null) return null;
+   
+   return new File(cache_directory,hash + ".xml");
+}
+
+
+private static String getFileHash(File f)
+{
+   if (f == null || !f.exists()) return null;
+   
+   try {
+      return getHash(Files.readAllBytes(f.toPath()));
+    }
+   catch (IOException e) {
+      return null;
+    }
+}
+
+
+private static String getHash(byte [] data)
+{
+   try {
+      MessageDigest md = MessageDigest.getInstance("SHA-256");
+      byte [] dig = md.digest(data);
+      StringBuffer buf = new StringBuffer();
+      for (byte b : dig) {
+         buf.append(String.format("%02x",b & 0xff));
+       }
+      return buf.toString();
+    }
+   catch (NoSuchAlgorithmException e) {
+      return null;
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Cached result                                                           */
+/*                                                                              */
+/********************************************************************************/
+
+final class CachedResult {
+
+   private DiadSymptom for_symptom;
+   private List<DiadLocation> location_set;
+   private int start_index;
+   private String start_class;
+   private String start_method;
+   private int start_line;
+   
+   private CachedResult(Element xml) {
+      for_symptom = new DicontrolSymptom(IvyXml.getChild(xml,"SYMPTOM"));
+      location_set = new ArrayList<>();
+      for (Element le : IvyXml.children(xml,"LOCATION")) {
+         location_set.add(new DiadLocation(diad_control,le,null));
+       }
+      Element se = IvyXml.getChild(xml,"START");
+      start_index = IvyXml.getAttrInt(se,"INDEX");
+      start_class = IvyXml.getAttrString(se,"CLASS");
+      start_method = IvyXml.getAttrString(se,"METHOD");
+      start_line = IvyXml.getAttrInt(se,"LINE");
+    }
+   
+   DiadSymptom getSymptom()                     { return for_symptom; }
+   List<DiadLocation> getLocations()            { return location_set; }
+   
+   DiadStackFrame getStartFrame(List<DiadStackFrame> frames) {
+      if (start_index < 0 || start_index >= frames.size()) return null;
+      DiadStackFrame frm = frames.get(start_index);
+      if (!frm.getClassName().equals(start_class)) return null;
+      if (!frm.getMethodName().equals(start_method)) return null;
+      if (frm.getLineNumber() != start_line) return null;
+      return frm;
+    }
+
+}       // end of inner class CachedResult
+
+
+}       // end of class DicontrolResultCache
+
+
+
+
+/* end of DicontrolResultCache.java */
@@ -0,0 +1,309 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolServerHealth.java                                      */
+/*                                                                              */
+/*      Latency tracking and circuit breaker for an analysis server             */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.brown.cs.ivy.file.IvyLog;
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+class DicontrolServerHealth implements DicontrolConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private String          server_name;
+private String          property_prefix;
+private long            min_timeout;
+private long            max_timeout;
+private Map<String,Long> command_timeout;
+private double          timeout_factor;
+private boolean         adaptive_timeout;
+private int             failure_limit;
+private long            open_interval;
+
+private Map<String,LatencyTracker> command_latency;
+private DiadServerState server_state;
+private int             num_failures;
+private int             num_slow;
+private long            open_time;
+private boolean         probe_active;
+
+private static final int        NUM_SAMPLES = 100;
+private static final int        MIN_SAMPLES = 8;
+private static final double     PERCENTILE = 0.99;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DicontrolServerHealth(DicontrolMain ctrl,String name,long dflt,boolean adapt)
+{
+   server_name = name;
+
+   String pfx = "Diad." + name.toLowerCase() + ".";
+   property_prefix = pfx;
+   min_timeout = ctrl.getProperty(pfx + "timeout.min",5000);
+   max_timeout = ctrl.getProperty(pfx + "timeout.max",(int) dflt);
+   timeout_factor = ctrl.getProperty(pfx + "timeout.factor",4.0);
+   String ad = ctrl.getProperty(pfx + "timeout.adaptive");
+   adaptive_timeout = (ad == null ? adapt : Boolean.parseBoolean(ad));
+   failure_limit = Math.max(1,ctrl.getProperty(pfx + "breaker.failures",3));
+   open_interval = ctrl.getProperty(pfx + "breaker.interval",30000);
+
+   command_timeout = new HashMap<>();
+   command_latency = new HashMap<>();
+   server_state = DiadServerState.CLOSED;
+   num_failures = 0;
+   num_slow = 0;
+   open_time = 0;
+   probe_active = false;
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Access methods                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+String getName()                                { return server_name; }
+
+synchronized DiadServerState getState()
+{
+   if (server_state == DiadServerState.OPEN &&
+         System.currentTimeMillis() - open_time >= open_interval) {
+      return DiadServerState.HALF_OPEN;
+    }
+
+   return server_state;
+}
+
+
+// commands that legitimately run long get their own maximum
+
+void setMaxTimeout(DicontrolMain ctrl,String cmd,long dflt)
+{
+   String pid = property_prefix + "timeout.max." + cmd.toLowerCase();
+   long t = ctrl.getProperty(pid,(int) dflt);
+   synchronized (this) {
+      command_timeout.put(cmd,t);
+    }
+}
+
+
+private long getMaxTimeout(String cmd)
+{
+   Long t = command_timeout.get(cmd);
+   if (t == null) return max_timeout;
+   return t;
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Request admission                                                       */
+/*                                                                              */
+/********************************************************************************/
+
+synchronized boolean allowRequest(String cmd)
+{
+   // PING is how restarts detect the server; never block it
+   if (cmd.equals("PING")) return true;
+
+   switch (server_state) {
+      case CLOSED :
+         return true;
+      case OPEN :
+         if (System.currentTimeMillis() - open_time < open_interval) return false;
+         server_state = DiadServerState.HALF_OPEN;
+         probe_active = false;
+         break;
+      case HALF_OPEN :
+         break;
+    }
+
+   // let a single request through to test the server
+   if (probe_active) return false;
+   probe_active = true;
+   return true;
+}
+
+
+synchronized long getTimeout(String cmd)
+{
+   long max = getMaxTimeout(cmd);
+   if (!adaptive_timeout) return max;
+   
+   LatencyTracker lt = command_latency.get(cmd);
+   if (lt == null) return max;
+
+   long p = lt.getPercentile(PERCENTILE);
+   if (p < 0) return max;
+
+   long t = (long) (p * timeout_factor);
+   t = Math.max(t,min_timeout);
+   if (max > 0) t = Math.min(t,max);
+
+   return t;
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Record results                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+// returns true if this result opened the breaker and the server should be checked
+
+synchronized boolean noteResult(String cmd,long time,long timeout,boolean ok)
+{
+   if (ok) {
+      LatencyTracker lt = command_latency.get(cmd);
+      if (lt == null) {
+         lt = new LatencyTracker();
+         command_latency.put(cmd,lt);
+       }
+      lt.add(time);
+      num_failures = 0;
+      num_slow = 0;
+      probe_active = false;
+      if (server_state != DiadServerState.CLOSED) {
+         IvyLog.logI("DICONTROL","Server " + server_name + " available again");
+         server_state = DiadServerState.CLOSED;
+       }
+      return false;
+    }
+
+   if (cmd.equals("PING")) return false;
+
+   // a reply cut off by the adaptive limit may just be slow; a quick null (no
+   // receiver), a timeout at the maximum, or repeated cutoffs are failures
+   long max = getMaxTimeout(cmd);
+   boolean cutoff = timeout > 0 && time >= timeout && (max <= 0 || timeout < max);
+   if (cutoff && ++num_slow < failure_limit) {
+      IvyLog.logD("DICONTROL","Server " + server_name + " slow on " + cmd + " " + time);
+      probe_active = false;
+      return false;
+    }
+
+   ++num_failures;
+   IvyLog.logE("DICONTROL","Server " + server_name + " failed to reply to " + cmd +
+         " after " + time + " (" + num_failures + ")");
+
+   if (server_state == DiadServerState.HALF_OPEN ||
+         (server_state == DiadServerState.CLOSED && num_failures >= failure_limit)) {
+      server_state = DiadServerState.OPEN;
+      open_time = System.currentTimeMillis();
+      probe_active = false;
+      IvyLog.logE("DICONTROL","Server " + server_name + " marked unavailable");
+      return true;
+    }
+
+   return false;
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Output methods                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+synchronized void outputXml(IvyXmlWriter xw)
+{
+   xw.begin("SERVER");
+   xw.field("NAME",server_name);
+   xw.field("STATE",getState());
+   xw.field("FAILURES",num_failures);
+   for (Map.Entry<String,LatencyTracker> ent : command_latency.entrySet()) {
+      xw.begin("LATENCY");
+      xw.field("COMMAND",ent.getKey());
+      xw.field("P50",ent.getValue().getPercentile(0.5));
+      xw.field("P99",ent.getValue().getPercentile(PERCENTILE));
+      xw.field("TIMEOUT",getTimeout(ent.getKey()));
+      xw.end("LATENCY");
+    }
+   xw.end("SERVER");
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Recent latencies for a single command                                   */
+/*                                                                              */
+/********************************************************************************/
+
+private static class LatencyTracker {
+
+   private long [] sample_times;
+   private int num_samples;
+   private int next_sample;
+
+   LatencyTracker() {
+      sample_times = new long[NUM_SAMPLES];
+      num_samples = 0;
+      next_sample = 0;
+    }
+
+   void add(long time) {
+      sample_times[next_sample] = time;
+      next_sample = (next_sample + 1) % NUM_SAMPLES;
+      if (num_samples < NUM_SAMPLES) ++num_samples;
+    }
+
+   long getPercentile(double pct) {
+      if (num_samples < MIN_SAMPLES) return -1;
+      long [] v = Arrays.copyOf(sample_times,num_samples);
+      Arrays.sort(v);
+      int idx = (int) Math.ceil(pct * num_samples) - 1;
+      idx = Math.max(0,Math.min(idx,num_samples-1));
+      return v[idx];
+    }
+
+}       // end of inner class LatencyTracker
+
+
+}       // end of class DicontrolServerHealth
+
+
+
+
+/* end of DicontrolServerHealth.java */
@@ -22,9 +22,12 @@
 
 package edu.brown.cs.diad.dicontrol;
 
+import org.w3c.dom.Element;
+
 import edu.brown.cs.diad.dicore.DiadSymptom;
 import edu.brown.cs.diad.dicore.DiadConstants.DiadSymptomType;
 import edu.brown.cs.diad.dicore.DiadConstants.DiadValueOperator;
+import edu.brown.cs.ivy.xml.IvyXml;
 import edu.brown.cs.ivy.xml.IvyXmlWriter;
 
 class DicontrolSymptom implements DiadSymptom
@@ -69,6 +72,17 @@ DicontrolSymptom(DiadSymptomType type,String item)
 }
 
 
+DicontrolSymptom(Element xml)
+{
+   symptom_type = IvyXml.getAttrEnum(xml,"TYPE",DiadSymptomType.NONE);
+   symptom_item = IvyXml.getAttrString(xml,"ITEM");
+   original_value = IvyXml.getTextElement(xml,"ORIGINAL");
+   target_value = IvyXml.getTextElement(xml,"TARGET");
+   value_operator = IvyXml.getAttrEnum(xml,"OPERATOR",DiadValueOperator.NONE);
+   target_precision = IvyXml.getAttrDouble(xml,"PRECISION",1e-5);
+}
+
+
 /********************************************************************************/
 /*                                                                              */
 /*      Access methods                                                          */
@@ -106,7 +120,14 @@ DicontrolSymptom(DiadSymptomType type,String item)
 
 @Override public void outputXml(IvyXmlWriter xw)
 {
-   // TODO
+   xw.begin("SYMPTOM");
+   xw.field("TYPE",symptom_type);
+   if (symptom_item != null) xw.field("ITEM",symptom_item);
+   xw.field("OPERATOR",value_operator);
+   xw.field("PRECISION",target_precision);
+   if (original_value != null) xw.textElement("ORIGINAL",original_value);
+   if (target_value != null) xw.textElement("TARGET",target_value);
+   xw.end("SYMPTOM");
 }
 
 
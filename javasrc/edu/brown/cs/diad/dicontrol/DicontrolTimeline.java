@@ -0,0 +1,370 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolTimeline.java                                          */
+/*                                                                              */
+/*      Record where a candidate spends its time                                */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.brown.cs.diad.dicore.DiadConstants.DiadCandidateState;
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+class DicontrolTimeline implements DicontrolConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private String          timeline_name;
+private int             timeline_index;
+private long            base_micros;
+private long            base_nanos;
+private List<TimelineEvent> state_events;
+private Deque<TimelineEvent> call_events;
+private Map<String,CallSummary> old_calls;
+private TimelineEvent   current_state;
+
+private static final int MAX_CALLS = 256;
+
+private static final ThreadLocal<DicontrolTimeline> current_timeline = new ThreadLocal<>();
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DicontrolTimeline(String name,int idx)
+{
+   timeline_name = name;
+   timeline_index = idx;
+   base_micros = System.currentTimeMillis() * 1000;
+   base_nanos = System.nanoTime();
+   state_events = new ArrayList<>();
+   call_events = new ArrayDeque<>();
+   old_calls = new LinkedHashMap<>();
+   current_state = null;
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Thread association: remote calls are charged to the current one         */
+/*                                                                              */
+/********************************************************************************/
+
+static DicontrolTimeline getCurrent()
+{
+   return current_timeline.get();
+}
+
+
+static DicontrolTimeline setCurrent(DicontrolTimeline tl)
+{
+   DicontrolTimeline prev = current_timeline.get();
+   if (tl == null) current_timeline.remove();
+   else current_timeline.set(tl);
+   
+   return prev;
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Recording methods                                                       */
+/*                                                                              */
+/********************************************************************************/
+
+synchronized int getEventCount()
+{
+   return state_events.size() + call_events.size() + old_calls.size();
+}
+
+
+long getTime()
+{
+   return base_micros + (System.nanoTime() - base_nanos) / 1000;
+}
+
+
+synchronized void noteState(DiadCandidateState st)
+{
+   long now = getTime();
+   if (current_state != null) current_state.setEnd(now);
+   current_state = new TimelineEvent("STATE",st.toString(),now);
+   state_events.add(current_state);
+}
+
+
+synchronized void noteCall(String target,String cmd,long start,int outbytes,
+      int inbytes,boolean ok)
+{
+   TimelineEvent evt = new TimelineEvent("CALL",target + ":" + cmd,start);
+   evt.setEnd(getTime());
+   evt.setCallData(outbytes,inbytes,ok);
+   call_events.add(evt);
+   
+   // only recent calls are kept; older ones just add to their totals
+   if (call_events.size() > MAX_CALLS) {
+      TimelineEvent old = call_events.removeFirst();
+      CallSummary cs = old_calls.get(old.event_name);
+      if (cs == null) {
+         cs = new CallSummary(old.event_name);
+         old_calls.put(old.event_name,cs);
+       }
+      cs.addEvent(old,0);
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Output methods                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+synchronized void outputXml(IvyXmlWriter xw)
+{
+   // calls are summarized per target:cmd; recent ones are also in the trace
+   Map<String,CallSummary> calls = new LinkedHashMap<>();
+   for (CallSummary cs : old_calls.values()) {
+      calls.put(cs.call_name,new CallSummary(cs));
+    }
+   long now = getTime();
+   for (TimelineEvent evt : call_events) {
+      CallSummary cs = calls.get(evt.event_name);
+      if (cs == null) {
+         cs = new CallSummary(evt.event_name);
+         calls.put(evt.event_name,cs);
+       }
+      cs.addEvent(evt,now);
+    }
+   long sendbytes = 0;
+   long recvbytes = 0;
+   for (CallSummary cs : calls.values()) {
+      sendbytes += cs.send_bytes;
+      recvbytes += cs.recv_bytes;
+    }
+   
+   xw.begin("TIMELINE");
+   xw.field("START",base_micros);
+   xw.field("SEND",sendbytes);
+   xw.field("RECV",recvbytes);
+   for (TimelineEvent evt : state_events) {
+      evt.outputXml(xw);
+    }
+   for (CallSummary cs : calls.values()) {
+      cs.outputXml(xw);
+    }
+   xw.end("TIMELINE");
+}
+
+
+// events in the Chrome trace event format; one trace thread per candidate
+
+synchronized void outputTrace(StringBuffer buf)
+{
+   addTraceEvent(buf,"{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" +
+         timeline_index + ",\"args\":{\"name\":\"" + escape(timeline_name) + "\"}}");
+   
+   long now = getTime();
+   List<TimelineEvent> evts = new ArrayList<>(state_events);
+   evts.addAll(call_events);
+   for (TimelineEvent evt : evts) {
+      StringBuffer ebuf = new StringBuffer();
+      ebuf.append("{\"name\":\"" + escape(evt.event_name) + "\"");
+      ebuf.append(",\"cat\":\"" + evt.event_kind.toLowerCase() + "\"");
+      ebuf.append(",\"ph\":\"X\",\"pid\":1,\"tid\":" + timeline_index);
+      ebuf.append(",\"ts\":" + evt.start_time);
+      long end = (evt.end_time < 0 ? now : evt.end_time);
+      ebuf.append(",\"dur\":" + (end - evt.start_time));
+      if (evt.event_kind.equals("CALL")) {
+         ebuf.append(",\"args\":{\"send\":" + evt.send_bytes + ",\"recv\":" +
+               evt.recv_bytes + ",\"ok\":" + evt.call_ok + "}");
+       }
+      ebuf.append("}");
+      addTraceEvent(buf,ebuf.toString());
+    }
+}
+
+
+static String outputTrace(List<DicontrolTimeline> tls)
+{
+   StringBuffer buf = new StringBuffer();
+   buf.append("{\"traceEvents\":[");
+   for (DicontrolTimeline tl : tls) {
+      tl.outputTrace(buf);
+    }
+   buf.append("\n]}\n");
+   
+   return buf.toString();
+}
+
+
+private static void addTraceEvent(StringBuffer buf,String evt)
+{
+   if (buf.charAt(buf.length()-1) != '[') buf.append(",");
+   buf.append("\n");
+   buf.append(evt);
+}
+
+
+private static String escape(String s)
+{
+   return s.replace("\\","\\\\").replace("\"","\\\"");
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Timeline event                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+private static class TimelineEvent {
+
+   private String event_kind;
+   private String event_name;
+   private long start_time;
+   private long end_time;
+   private int send_bytes;
+   private int recv_bytes;
+   private boolean call_ok;
+
+   TimelineEvent(String kind,String name,long start) {
+      event_kind = kind;
+      event_name = name;
+      start_time = start;
+      end_time = -1;
+      send_bytes = 0;
+      recv_bytes = 0;
+      call_ok = true;
+    }
+
+   void setEnd(long t)                          { end_time = t; }
+
+   void setCallData(int out,int in,boolean ok) {
+      send_bytes = out;
+      recv_bytes = in;
+      call_ok = ok;
+    }
+
+   void outputXml(IvyXmlWriter xw) {
+      xw.begin(event_kind);
+      xw.field("NAME",event_name);
+      xw.field("START",start_time);
+      if (end_time >= 0) xw.field("END",end_time);
+      if (event_kind.equals("CALL")) {
+         xw.field("SEND",send_bytes);
+         xw.field("RECV",recv_bytes);
+         xw.field("OK",call_ok);
+       }
+      xw.end(event_kind);
+    }
+
+}       // end of inner class TimelineEvent
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Call summary for a single target:cmd                                    */
+/*                                                                              */
+/********************************************************************************/
+
+private static class CallSummary {
+
+   private String call_name;
+   private int call_count;
+   private int fail_count;
+   private long first_start;
+   private long total_time;
+   private long send_bytes;
+   private long recv_bytes;
+
+   CallSummary(String name) {
+      call_name = name;
+      call_count = 0;
+      fail_count = 0;
+      first_start = -1;
+      total_time = 0;
+      send_bytes = 0;
+      recv_bytes = 0;
+    }
+
+   CallSummary(CallSummary cs) {
+      call_name = cs.call_name;
+      call_count = cs.call_count;
+      fail_count = cs.fail_count;
+      first_start = cs.first_start;
+      total_time = cs.total_time;
+      send_bytes = cs.send_bytes;
+      recv_bytes = cs.recv_bytes;
+    }
+
+   void addEvent(TimelineEvent evt,long now) {
+      ++call_count;
+      if (!evt.call_ok) ++fail_count;
+      if (first_start < 0) first_start = evt.start_time;
+      long end = (evt.end_time < 0 ? now : evt.end_time);
+      total_time += end - evt.start_time;
+      send_bytes += evt.send_bytes;
+      recv_bytes += evt.recv_bytes;
+    }
+
+   void outputXml(IvyXmlWriter xw) {
+      xw.begin("CALL");
+      xw.field("NAME",call_name);
+      xw.field("START",first_start);
+      xw.field("COUNT",call_count);
+      xw.field("FAIL",fail_count);
+      xw.field("TIME",total_time);
+      xw.field("SEND",send_bytes);
+      xw.field("RECV",recv_bytes);
+      xw.end("CALL");
+    }
+
+}       // end of inner class CallSummary
+
+
+}       // end of class DicontrolTimeline
+
+
+
+
+/* end of DicontrolTimeline.java */
@@ -0,0 +1,97 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolTransport.java                                         */
+/*                                                                              */
+/*      Message transport used by the monitor                                   */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.io.File;
+
+import edu.brown.cs.ivy.file.IvyLog;
+
+interface DicontrolTransport extends DicontrolConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Static creation methods                                                 */
+/*                                                                              */
+/********************************************************************************/
+
+static DicontrolTransport createTransport(DicontrolMain ctrl,String mintid)
+{
+   DicontrolTransportMode mode = ctrl.getProperty("Diad.transport",
+         DicontrolTransportMode.LIVE);
+   String fnm = ctrl.getProperty("Diad.transport.file");
+   File f = null;
+   if (fnm != null) f = new File(fnm);
+   else f = new File(System.getProperty("user.home"),"diad.session.xml");
+
+   IvyLog.logI("DICONTROL","Using " + mode + " transport");
+
+   switch (mode) {
+      default :
+      case LIVE :
+         return new DicontrolTransportLive(mintid);
+      case RECORD :
+         return new DicontrolTransportRecord(new DicontrolTransportLive(mintid),f);
+      case REPLAY :
+         return new DicontrolTransportReplay(ctrl,f);
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Transport methods                                                       */
+/*                                                                              */
+/********************************************************************************/
+
+void register(String pattern,String source,EventHandler hdlr);
+
+void send(String msg,DicontrolReply rply);
+
+void send(String msg);
+
+void start();
+
+boolean isReplay();
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Handler for incoming messages                                           */
+/*                                                                              */
+/********************************************************************************/
+
+interface EventHandler {
+   void handleEvent(DicontrolEvent evt);
+}
+
+
+}       // end of interface DicontrolTransport
+
+
+
+
+/* end of DicontrolTransport.java */
@@ -0,0 +1,121 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolTransportLive.java                                     */
+/*                                                                              */
+/*      Transport that talks to the running processes through mint             */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import edu.brown.cs.ivy.mint.MintArguments;
+import edu.brown.cs.ivy.mint.MintConstants;
+import edu.brown.cs.ivy.mint.MintControl;
+import edu.brown.cs.ivy.mint.MintHandler;
+import edu.brown.cs.ivy.mint.MintMessage;
+import edu.brown.cs.ivy.mint.MintConstants.MintSyncMode;
+
+class DicontrolTransportLive implements DicontrolTransport
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private MintControl     mint_control;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DicontrolTransportLive(String mintid)
+{
+   mint_control = MintControl.create(mintid,MintSyncMode.ONLY_REPLIES);
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Transport methods                                                       */
+/*                                                                              */
+/********************************************************************************/
+
+@Override public void register(String pattern,String source,EventHandler hdlr)
+{
+   boolean hasarg = pattern.contains("_VAR_0");
+   mint_control.register(pattern,new MintAdapter(source,hasarg,hdlr));
+}
+
+
+@Override public void send(String msg,DicontrolReply rply)
+{
+   mint_control.send(msg,rply,MintConstants.MINT_MSG_FIRST_NON_NULL);
+}
+
+
+@Override public void send(String msg)
+{
+   mint_control.send(msg);
+}
+
+
+@Override public void start()                   { }
+
+@Override public boolean isReplay()             { return false; }
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Convert mint messages to events                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private static final class MintAdapter implements MintHandler {
+
+   private String event_source;
+   private boolean has_argument;
+   private EventHandler for_handler;
+
+   MintAdapter(String source,boolean hasarg,EventHandler hdlr) {
+      event_source = source;
+      has_argument = hasarg;
+      for_handler = hdlr;
+    }
+
+   @Override public void receive(MintMessage msg,MintArguments args) {
+      String arg = (has_argument ? args.getArgument(0) : null);
+      for_handler.handleEvent(new DicontrolEvent(event_source,arg,msg));
+    }
+
+}       // end of inner class MintAdapter
+
+
+}       // end of class DicontrolTransportLive
+
+
+
+
+/* end of DicontrolTransportLive.java */
@@ -0,0 +1,211 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolTransportRecord.java                                   */
+/*                                                                              */
+/*      Transport that records a live session for later replay                  */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.brown.cs.ivy.file.IvyLog;
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+class DicontrolTransportRecord implements DicontrolTransport
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private DicontrolTransport base_transport;
+private PrintWriter     record_writer;
+private long            start_time;
+private AtomicInteger   send_count;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DicontrolTransportRecord(DicontrolTransport base,File f)
+{
+   base_transport = base;
+   start_time = System.currentTimeMillis();
+   send_count = new AtomicInteger();
+
+   try {
+      record_writer = new PrintWriter(new FileWriter(f));
+      record_writer.println("<DIADSESSION START='" + start_time + "'>");
+      record_writer.flush();
+      Runtime.getRuntime().addShutdownHook(new RecordCloser());
+      IvyLog.logI("DICONTROL","Recording session to " + f);
+    }
+   catch (IOException e) {
+      IvyLog.logE("DICONTROL","Can't record session to " + f,e);
+      record_writer = null;
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Transport methods                                                       */
+/*                                                                              */
+/********************************************************************************/
+
+@Override public void register(String pattern,String source,EventHandler hdlr)
+{
+   base_transport.register(pattern,source,new RecordHandler(hdlr));
+}
+
+
+@Override public void send(String msg,DicontrolReply rply)
+{
+   int seq = send_count.incrementAndGet();
+   long start = System.currentTimeMillis();
+
+   base_transport.send(msg,rply);
+
+   rply.getFuture().whenComplete((r,t) -> recordSend(seq,start,msg,rply.getReplyText()));
+}
+
+
+@Override public void send(String msg)
+{
+   base_transport.send(msg);
+}
+
+
+@Override public void start()
+{
+   base_transport.start();
+}
+
+
+@Override public boolean isReplay()             { return false; }
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Recording methods                                                       */
+/*                                                                              */
+/********************************************************************************/
+
+private void recordSend(int seq,long start,String msg,String rply)
+{
+   long now = System.currentTimeMillis();
+
+   try (IvyXmlWriter xw = new IvyXmlWriter()) {
+      xw.begin("SEND");
+      xw.field("SEQ",seq);
+      xw.field("TIME",start - start_time);
+      xw.field("DELAY",now - start);
+      xw.textElement("MESSAGE",msg);
+      if (rply != null) xw.textElement("REPLY",rply);
+      xw.end("SEND");
+      writeRecord(xw.toString());
+    }
+}
+
+
+private void recordEvent(DicontrolEvent evt,int after)
+{
+   try (IvyXmlWriter xw = new IvyXmlWriter()) {
+      xw.begin("EVENT");
+      xw.field("SOURCE",evt.getSource());
+      if (evt.getArgument() != null) xw.field("ARG",evt.getArgument());
+      xw.field("AFTER",after);
+      xw.field("TIME",System.currentTimeMillis() - start_time);
+      xw.textElement("MESSAGE",evt.getText());
+      xw.end("EVENT");
+      writeRecord(xw.toString());
+    }
+}
+
+
+private synchronized void writeRecord(String xml)
+{
+   if (record_writer == null) return;
+
+   record_writer.println(xml);
+   record_writer.flush();
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Handler wrapper to record incoming messages                             */
+/*                                                                              */
+/********************************************************************************/
+
+private final class RecordHandler implements EventHandler {
+
+   private EventHandler for_handler;
+
+   RecordHandler(EventHandler hdlr) {
+      for_handler = hdlr;
+    }
+
+   @Override public void handleEvent(DicontrolEvent evt) {
+      // note the event before handling since handlers may exit
+      recordEvent(evt,send_count.get());
+      for_handler.handleEvent(evt);
+    }
+
+}       // end of inner class RecordHandler
+
+
+private final class RecordCloser extends Thread {
+
+   RecordCloser() {
+      super("DIAD Session Recorder");
+    }
+
+   @Override public void run() {
+      synchronized (DicontrolTransportRecord.this) {
+         if (record_writer == null) return;
+         record_writer.println("</DIADSESSION>");
+         record_writer.close();
+         record_writer = null;
+       }
+    }
+
+}       // end of inner class RecordCloser
+
+
+}       // end of class DicontrolTransportRecord
+
+
+
+
+/* end of DicontrolTransportRecord.java */
@@ -0,0 +1,367 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolTransportReplay.java                                   */
+/*                                                                              */
+/*      Transport that replays a recorded session without live processes       */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.w3c.dom.Element;
+
+import edu.brown.cs.ivy.file.IvyLog;
+import edu.brown.cs.ivy.xml.IvyXml;
+
+class DicontrolTransportReplay implements DicontrolTransport
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private Map<String,EventHandler> event_handlers;
+private Map<String,Deque<ReplyData>> text_replies;
+private Map<String,Deque<ReplyData>> key_replies;
+private List<EventData> replay_events;
+private double          time_scale;
+private long            max_wait;
+private int             send_count;
+private ScheduledExecutorService reply_timer;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DicontrolTransportReplay(DicontrolMain ctrl,File f)
+{
+   event_handlers = new ConcurrentHashMap<>();
+   text_replies = new HashMap<>();
+   key_replies = new HashMap<>();
+   replay_events = new ArrayList<>();
+   send_count = 0;
+
+   time_scale = 1.0;
+   String scale = ctrl.getProperty("Diad.replay.scale");
+   if (scale != null) {
+      try {
+         time_scale = Math.max(0,Double.parseDouble(scale));
+       }
+      catch (NumberFormatException e) { }
+    }
+   max_wait = ctrl.getProperty("Diad.replay.wait",60000);
+
+   reply_timer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r,"DIAD Replay Replies");
+      t.setDaemon(true);
+      return t;
+    });
+
+   loadSession(f);
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Transport methods                                                       */
+/*                                                                              */
+/********************************************************************************/
+
+@Override public void register(String pattern,String source,EventHandler hdlr)
+{
+   event_handlers.put(source,hdlr);
+}
+
+
+@Override public void send(String msg,DicontrolReply rply)
+{
+   synchronized (this) {
+      ++send_count;
+      notifyAll();
+    }
+
+   ReplyData rd = findReply(msg);
+   if (rd == null) {
+      IvyLog.logD("DICONTROL","No recorded reply for " + msg);
+      rply.noteReply(null);
+      return;
+    }
+
+   long delay = (long) (rd.getDelay() * time_scale);
+   if (delay <= 0) rply.noteReply(rd.getReply());
+   else {
+      reply_timer.schedule(() -> rply.noteReply(rd.getReply()),delay,
+            TimeUnit.MILLISECONDS);
+    }
+}
+
+
+@Override public void send(String msg)
+{
+   IvyLog.logD("DICONTROL","Replay ignoring " + msg);
+}
+
+
+@Override public boolean isReplay()             { return true; }
+
+
+@Override public void start()
+{
+   Thread t = new Thread(this::replayEvents,"DIAD Replay Events");
+   t.setDaemon(true);
+   t.start();
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Reply matching                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+private synchronized ReplyData findReply(String msg)
+{
+   // prefer an identical message; otherwise take the next reply for the command
+   ReplyData rd = nextReply(text_replies.get(msg));
+   if (rd == null) rd = nextReply(key_replies.get(getKey(msg)));
+   if (rd != null) rd.markUsed();
+
+   return rd;
+}
+
+
+private ReplyData nextReply(Deque<ReplyData> q)
+{
+   if (q == null) return null;
+
+   while (!q.isEmpty()) {
+      ReplyData rd = q.poll();
+      if (!rd.isUsed()) return rd;
+    }
+
+   return null;
+}
+
+
+private String getKey(String msg)
+{
+   Element xml = IvyXml.convertStringToXml(msg);
+   if (xml == null) return msg;
+
+   return xml.getNodeName() + ":" + IvyXml.getAttrString(xml,"DO");
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Event replay                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+private void replayEvents()
+{
+   IvyLog.logI("DICONTROL","Replaying " + replay_events.size() + " events");
+
+   long prevtime = 0;
+   long prevreal = System.currentTimeMillis();
+   for (EventData ed : replay_events) {
+      waitForSends(ed.getAfter());
+      long now = System.currentTimeMillis();
+      long delay = (long) ((ed.getTime() - prevtime) * time_scale) - (now - prevreal);
+      if (delay > 0) {
+         try {
+            Thread.sleep(delay);
+          }
+         catch (InterruptedException e) {
+            return;
+          }
+       }
+      prevtime = ed.getTime();
+      prevreal = System.currentTimeMillis();
+
+      EventHandler hdlr = event_handlers.get(ed.getSource());
+      if (hdlr == null) {
+         IvyLog.logD("DICONTROL","No handler for replayed " + ed.getSource() + " event");
+         continue;
+       }
+      try {
+         hdlr.handleEvent(new DicontrolEvent(ed.getSource(),ed.getArgument(),
+               ed.getText()));
+       }
+      catch (Throwable t) {
+         IvyLog.logE("DICONTROL","Problem replaying event " + ed.getText(),t);
+       }
+    }
+
+   IvyLog.logI("DICONTROL","Replay complete");
+}
+
+
+private synchronized void waitForSends(int ct)
+{
+   long end = System.currentTimeMillis() + max_wait;
+   while (send_count < ct) {
+      long delta = end - System.currentTimeMillis();
+      if (delta <= 0) {
+         IvyLog.logE("DICONTROL","Replay diverged: expected " + ct + " sends, saw " +
+               send_count);
+         return;
+       }
+      try {
+         wait(delta);
+       }
+      catch (InterruptedException e) {
+         return;
+       }
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Load a recorded session                                                 */
+/*                                                                              */
+/********************************************************************************/
+
+private void loadSession(File f)
+{
+   String text = null;
+   try {
+      text = new String(Files.readAllBytes(f.toPath()));
+    }
+   catch (IOException e) {
+      IvyLog.logE("DICONTROL","Can't read session file " + f,e);
+      return;
+    }
+
+   // a session that was not closed cleanly lacks the end tag
+   if (!text.trim().endsWith("</DIADSESSION>")) text = text + "</DIADSESSION>";
+   Element xml = IvyXml.convertStringToXml(text);
+   if (xml == null) {
+      IvyLog.logE("DICONTROL","Bad session file " + f);
+      return;
+    }
+
+   List<ReplyData> sends = new ArrayList<>();
+   for (Element se : IvyXml.children(xml,"SEND")) {
+      sends.add(new ReplyData(se));
+    }
+   sends.sort((r1,r2) -> Integer.compare(r1.getSequence(),r2.getSequence()));
+   for (ReplyData rd : sends) {
+      text_replies.computeIfAbsent(rd.getMessage(),k -> new ArrayDeque<>()).add(rd);
+      key_replies.computeIfAbsent(getKey(rd.getMessage()),k -> new ArrayDeque<>()).add(rd);
+    }
+
+   for (Element ee : IvyXml.children(xml,"EVENT")) {
+      replay_events.add(new EventData(ee));
+    }
+   replay_events.sort((e1,e2) -> Long.compare(e1.getTime(),e2.getTime()));
+
+   IvyLog.logI("DICONTROL","Loaded " + sends.size() + " replies and " +
+         replay_events.size() + " events from " + f);
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Recorded data                                                           */
+/*                                                                              */
+/********************************************************************************/
+
+private static class ReplyData {
+
+   private int send_sequence;
+   private long reply_delay;
+   private String message_text;
+   private String reply_text;
+   private boolean is_used;
+
+   ReplyData(Element xml) {
+      send_sequence = IvyXml.getAttrInt(xml,"SEQ");
+      reply_delay = IvyXml.getAttrLong(xml,"DELAY");
+      message_text = IvyXml.getTextElement(xml,"MESSAGE");
+      reply_text = IvyXml.getTextElement(xml,"REPLY");
+      is_used = false;
+    }
+
+   int getSequence()                    { return send_sequence; }
+   long getDelay()                      { return reply_delay; }
+   String getMessage()                  { return message_text; }
+   String getReply()                    { return reply_text; }
+   boolean isUsed()                     { return is_used; }
+   void markUsed()                      { is_used = true; }
+
+}       // end of inner class ReplyData
+
+
+private static class EventData {
+
+   private String event_source;
+   private String event_argument;
+   private int after_send;
+   private long event_time;
+   private String event_text;
+
+   EventData(Element xml) {
+      event_source = IvyXml.getAttrString(xml,"SOURCE");
+      event_argument = IvyXml.getAttrString(xml,"ARG");
+      after_send = IvyXml.getAttrInt(xml,"AFTER");
+      event_time = IvyXml.getAttrLong(xml,"TIME");
+      event_text = IvyXml.getTextElement(xml,"MESSAGE");
+    }
+
+   String getSource()                   { return event_source; }
+   String getArgument()                 { return event_argument; }
+   int getAfter()                       { return after_send; }
+   long getTime()                       { return event_time; }
+   String getText()                     { return event_text; }
+
+}       // end of inner class EventData
+
+
+}       // end of class DicontrolTransportReplay
+
+
+
+
+/* end of DicontrolTransportReplay.java */
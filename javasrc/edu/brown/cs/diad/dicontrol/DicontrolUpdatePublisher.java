@@ -0,0 +1,144 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DicontrolUpdatePublisher.java                                   */
+/*                                                                              */
+/*      Coalesce candidate updates and send them off-thread                     */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+
+
+package edu.brown.cs.diad.dicontrol;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.brown.cs.ivy.file.IvyLog;
+import edu.brown.cs.ivy.xml.IvyXmlWriter;
+
+class DicontrolUpdatePublisher implements DicontrolConstants
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private ScheduledExecutorService update_timer;
+private Set<DicontrolUpdater> pending_updates;
+private long            update_window;
+private AtomicInteger   note_count;
+private AtomicInteger   send_count;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+DicontrolUpdatePublisher(DicontrolMain ctrl)
+{
+   update_window = Math.max(0,ctrl.getProperty("Diad.update.window",100));
+   pending_updates = new HashSet<>();
+   note_count = new AtomicInteger();
+   send_count = new AtomicInteger();
+
+   // one thread keeps the updates for a candidate in order
+   update_timer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r,"DIAD Update Publisher");
+      t.setDaemon(true);
+      return t;
+    });
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Note a change                                                           */
+/*                                                                              */
+/********************************************************************************/
+
+void noteChanged(DicontrolUpdater upd,boolean terminal)
+{
+   note_count.incrementAndGet();
+
+   synchronized (this) {
+      // an update already waiting will report the latest state
+      if (!pending_updates.add(upd) && !terminal) return;
+    }
+
+   long delay = (terminal ? 0 : update_window);
+   update_timer.schedule(() -> publish(upd),delay,TimeUnit.MILLISECONDS);
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Send an update                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+private void publish(DicontrolUpdater upd)
+{
+   synchronized (this) {
+      // already sent by an earlier terminal flush
+      if (!pending_updates.remove(upd)) return;
+    }
+
+   send_count.incrementAndGet();
+   try {
+      upd.sendUpdate();
+    }
+   catch (Throwable t) {
+      IvyLog.logE("DICONTROL","Problem sending candidate update",t);
+    }
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Statistics                                                              */
+/*                                                                              */
+/********************************************************************************/
+
+void outputXml(IvyXmlWriter xw)
+{
+   xw.begin("UPDATES");
+   xw.field("NOTED",note_count.get());
+   xw.field("SENT",send_count.get());
+   xw.field("WINDOW",update_window);
+   xw.end("UPDATES");
+}
+
+
+}       // end of class DicontrolUpdatePublisher
+
+
+
+
+/* end of DicontrolUpdatePublisher.java */
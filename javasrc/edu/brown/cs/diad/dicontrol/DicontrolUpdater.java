@@ -63,6 +63,34 @@ DicontrolUpdater(DicontrolMain ctrl,DicontrolCandidate cand)
 /********************************************************************************/
 
 @Override public void stateChanged()
+{
+   boolean term = false;
+   switch (for_candidate.getState()) {
+      case NO_SYMPTOM :
+      case NO_STACK :
+      case NO_ANALYSIS :
+      case NO_START_FRAME :
+      case NO_LOCATIONS :
+      case STARTING_FRAME_FOUND :
+      case EXECUTION_DONE :
+      case DEAD :
+      case INTERUPTED :
+         term = true;
+         break;
+      default :
+         break;
+    }
+   
+   diad_control.getUpdatePublisher().noteChanged(this,term);
+   
+   // a finished candidate may leave room for deferred ones
+   if (term) diad_control.startDeferred();
+}
+
+
+// called from the publisher with whatever the state is by then
+
+void sendUpdate()
 {
    CommandArgs args = new CommandArgs("ID",for_candidate.getId(),
          "STATE",for_candidate.getState());
@@ -72,7 +100,7 @@ DicontrolUpdater(DicontrolMain ctrl,DicontrolCandidate cand)
       cnts = xw.toString();
     }
    
-   diad_control.getMessageServer().sendDiadMessage("UPDATE",args,cnts);
+   diad_control.getMessageServer().sendDiadMessageAsync("UPDATE",args,cnts);
 }
 
 
@@ -0,0 +1,139 @@
+/********************************************************************************/
+/*                                                                              */
+/*              DiadCancelToken.java                                            */
+/*                                                                              */
+/*      Cooperative cancellation for candidate processing                       */
+/*                                                                              */
+/********************************************************************************/
+/*      Copyright 2025 Brown University -- Steven P. Reiss                    */
+/*********************************************************************************
+ *  Copyright 2025, Brown University, Providence, RI.                            *
+ *                                                                               *
+ *                        All Rights Reserved                                    *
+ *                                                                               *
+ * This program and the accompanying materials are made available under the      *
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution, *
+ * and is available at                                                           *
+ *      http://www.eclipse.org/legal/epl-v10.html                                *
+ *                                                                               *
+ ********************************************************************************/
+
+
+
+package edu.brown.cs.diad.dicore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+
+
+public class DiadCancelToken
+{
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Private Storage                                                         */
+/*                                                                              */
+/********************************************************************************/
+
+private volatile boolean is_cancelled;
+private List<Runnable>  cancel_actions;
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Constructors                                                            */
+/*                                                                              */
+/********************************************************************************/
+
+public DiadCancelToken()
+{
+   is_cancelled = false;
+   cancel_actions = new ArrayList<>();
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Access methods                                                          */
+/*                                                                              */
+/********************************************************************************/
+
+public boolean isCancelled()                    { return is_cancelled; }
+
+
+public static boolean isCancelled(DiadCancelToken tok)
+{
+   if (tok != null && tok.isCancelled()) return true;
+
+   return Thread.currentThread().isInterrupted();
+}
+
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Cancellation methods                                                    */
+/*                                                                              */
+/********************************************************************************/
+
+public void cancel()
+{
+   List<Runnable> acts;
+   synchronized (this) {
+      if (is_cancelled) return;
+      is_cancelled = true;
+      acts = new ArrayList<>(cancel_actions);
+      cancel_actions.clear();
+    }
+
+   for (Runnable r : acts) {
+      r.run();
+    }
+}
+
+
+public void onCancel(Runnable r)
+{
+   synchronized (this) {
+      if (!is_cancelled) {
+         cancel_actions.add(r);
+         return;
+       }
+    }
+
+   r.run();
+}
+
+
+public synchronized void removeOnCancel(Runnable r)
+{
+   cancel_actions.remove(r);
+}
+
+
+// cancel the future if the token is cancelled before it completes
+
+public <T> CompletableFuture<T> track(CompletableFuture<T> fut)
+{
+   if (fut == null || fut.isDone()) return fut;
+
+   Runnable r = () -> fut.cancel(false);
+   onCancel(r);
+   fut.whenComplete((v,t) -> removeOnCancel(r));
+
+   return fut;
+}
+
+
+
+}       // end of class DiadCancelToken
+
+
+
+
+/* end of DiadCancelToken.java */
@@ -99,6 +99,12 @@ enum DiadAnalysisFileMode {
    USER_FILES,
 }
 
+enum DiadServerState {
+   CLOSED,
+   OPEN,
+   HALF_OPEN,
+}
+
 enum DiadValueKind {
    UNKNOWN, PRIMITIVE, STRING, CLASS, OBJECT, ARRAY
 }
@@ -47,6 +47,8 @@ DiadStackFrame getUserFrame();
 
 DiadStackFrame getTopFrame();
 
+String getSignature();
+
 
 }       // end of interface DiadStack
 
@@ -34,6 +34,8 @@
 
 package edu.brown.cs.diad.dicore;
 
+import java.util.List;
+
 import edu.brown.cs.ivy.xml.IvyXmlWriter;
 
 public interface DiadThread
@@ -48,7 +50,11 @@ DiadStack getStack();
 boolean isInternal();
 String getExceptionType();
 
+// drop cached stack data; it is fetched again if needed
+default void releaseStack() { }
+
 DiadValue evaluate(String expr);
+List<DiadValue> evaluate(List<String> exprs);
 void outputXml(IvyXmlWriter xw);
 
 
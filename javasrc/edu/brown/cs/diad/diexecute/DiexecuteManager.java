@@ -25,6 +25,7 @@ package edu.brown.cs.diad.diexecute;
 import java.util.Collection;
 
 import edu.brown.cs.diad.dicontrol.DicontrolMain;
+import edu.brown.cs.diad.dicore.DiadCancelToken;
 import edu.brown.cs.diad.dicore.DiadLocation;
 import edu.brown.cs.diad.dicore.DiadStackFrame;
 import edu.brown.cs.diad.dicore.DiadSymptom;
@@ -73,9 +74,16 @@ DicontrolMain getDiadControl()                  { return diad_control; }
 
 public DiadStackFrame getStartingFrame(DiadSymptom symp,DiadThread thrd,
       Collection<DiadLocation> faults)
+{
+   return getStartingFrame(symp,thrd,faults,null);
+}
+
+
+public DiadStackFrame getStartingFrame(DiadSymptom symp,DiadThread thrd,
+      Collection<DiadLocation> faults,DiadCancelToken tok)
 {
    DiexecuteStartFinder fndr = new DiexecuteStartFinder(this,
-         thrd,faults);  
+         thrd,faults,tok);  
    
    return fndr.findStartingFrame(); 
 }
@@ -27,6 +27,7 @@ import java.util.Collection;
 
 import org.eclipse.jdt.core.dom.ASTNode;
 
+import edu.brown.cs.diad.dicore.DiadCancelToken;
 import edu.brown.cs.diad.dicore.DiadLocation;
 import edu.brown.cs.diad.dicore.DiadStackFrame;
 import edu.brown.cs.diad.dicore.DiadThread;
@@ -46,6 +47,7 @@ private DiexecuteManager exec_manager;
 private DiadThread      for_thread;
 private Collection<DiadLocation> fault_points;
 private int max_up;
+private DiadCancelToken cancel_token;
 
 
 
@@ -56,12 +58,13 @@ private int max_up;
 /********************************************************************************/
 
 DiexecuteStartFinder(DiexecuteManager mgr,DiadThread thrd,
-        Collection<DiadLocation> faults)
+        Collection<DiadLocation> faults,DiadCancelToken tok)
 {
    exec_manager = mgr;
    for_thread = thrd;
    fault_points = faults;
    max_up = mgr.getDiadControl().getProperty("Diad.max,up",20);
+   cancel_token = tok;
 }
 
 
@@ -82,6 +85,8 @@ DiadStackFrame findStartingFrame()
        }
     }
    
+   if (DiadCancelToken.isCancelled(cancel_token)) return null;
+   
    startframe = findValidStart(startframe);
    
    return startframe;
@@ -127,6 +132,7 @@ private DiadStackFrame findValidStart(DiadStackFrame frm)
    DisourceManager srcmgr = exec_manager.getDiadControl().getSourceManager();
    int ct = 0;
    for (DiadStackFrame bf : for_thread.getStack().getFrames()) {
+      if (DiadCancelToken.isCancelled(cancel_token)) return null;
       if (bf == frm) fnd = true;
       else if (fnd) {
 	 File f = bf.getSourceFile();
@@ -35,9 +35,11 @@
 package edu.brown.cs.diad.diruntime;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentSkipListSet;
 
 import org.w3c.dom.Element;
@@ -122,11 +124,29 @@ Element sendBubblesMessage(String cmd,CommandArgs args,String xml)
 }
 
 
+CompletableFuture<Element> sendBubblesMessageAsync(String cmd,CommandArgs args,String xml)
+{
+   return diad_control.sendBubblesMessageAsync(cmd,args,xml);
+}
+
+
+Element waitForReply(CompletableFuture<Element> fut)
+{
+   return diad_control.waitForReply(fut);
+}
+
+
 Element waitForEvaluation(String id)
 {
    return diad_control.waitForEvaluation(id); 
 }
 
+
+Map<String,Element> waitForEvaluations(Collection<String> ids)
+{
+   return diad_control.waitForEvaluations(ids);
+}
+
 String findProjectForFile(File f)
 {
    if (f == null) return null;
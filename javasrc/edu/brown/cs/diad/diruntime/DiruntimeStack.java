@@ -54,6 +54,7 @@ class DiruntimeStack implements DiruntimeConstants, DiadStack
 /********************************************************************************/
 
 private List<DiadStackFrame> stack_frames;
+private String          stack_signature;
 
 
 /********************************************************************************/
@@ -69,6 +70,7 @@ DiruntimeStack(Element xml)
       DiruntimeFrame bsf = new DiruntimeFrame(felt);
       stack_frames.add(bsf);
     }
+   stack_signature = null;
 }
 
 
@@ -103,6 +105,29 @@ DiruntimeStack(Element xml)
 }
 
 
+// user frames only, so the same failure reached through different
+// library or reflection frames still matches
+
+@Override public synchronized String getSignature()
+{
+   if (stack_signature == null) {
+      StringBuffer buf = new StringBuffer();
+      for (DiadStackFrame bsf : stack_frames) {
+         if (!bsf.isUserFrame()) continue;
+         buf.append(bsf.getClassName());
+         buf.append(".");
+         buf.append(bsf.getMethodName());
+         buf.append(":");
+         buf.append(bsf.getLineNumber());
+         buf.append(";");
+       }
+      stack_signature = buf.toString();
+    }
+   
+   return stack_signature;
+}
+
+
 }       // end of class DiruntimeStack
 
 
@@ -34,8 +34,12 @@
 
 package edu.brown.cs.diad.diruntime;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.w3c.dom.Element;
@@ -66,7 +70,7 @@ private RunThreadState thread_state;
 private RunThreadStateDetail thread_detail; 
 private String exception_type;
 private int num_frames;
-private DiruntimeStack call_stack;
+private volatile DiruntimeStack call_stack;
 
 private static final Map<String,RunThreadType> KNOWN_THREADS;
 private static AtomicInteger eval_counter = new AtomicInteger();
@@ -325,20 +329,29 @@ DiruntimeType stringType()
 
 @Override public DiruntimeStack getStack()
 {
-   if (call_stack == null) {
+   // local copy since releaseStack can clear the field at any time
+   DiruntimeStack stk = call_stack;
+   if (stk == null) {
       CommandArgs args = new CommandArgs("THREAD",thread_id);
       Element rply = getManager().sendBubblesMessage("GETSTACKFRAMES",args,null); 
       Element stack = IvyXml.getChild(rply,"STACKFRAMES");
       for (Element telt : IvyXml.children(stack,"THREAD")) {
          String teid = IvyXml.getAttrString(telt,"ID");
          if (teid.equals(thread_id)) {
-            call_stack = new DiruntimeStack(telt);
+            stk = new DiruntimeStack(telt);
+            call_stack = stk;
             break;
           }
        }
     }
    
-   return call_stack;
+   return stk;
+}
+
+
+@Override public void releaseStack()
+{
+   call_stack = null;
 }
 
 
@@ -351,31 +364,22 @@ DiruntimeType stringType()
 
 @Override public DiadValue evaluate(String expr)
 {
-   String eid = "DIAD_E_" + eval_counter.incrementAndGet();
-   // expr = "edu.brown.cs.seede.poppy.PoppyValue.register(" + expr + ")";
+   DiruntimeValueData svd = evaluateExpr(expr);
+   if (svd == null) return null;
    
-   DiadStackFrame frm = getStack().getUserFrame();
-   String proj = for_process.getManager().findProjectForFile(frm.getSourceFile());
-   CommandArgs args = new CommandArgs("THREAD",thread_id,
-	 "FRAME",frm.getFrameId(),"BREAK",false,"EXPR",expr,
-         "IMPLICIT",true,
-         "PROJECT",proj,
-	 "LEVEL",3,"ARRAY",-1,"REPLYID",eid);
-   args.put("SAVEID",eid);
-   Element xml = getManager().sendBubblesMessage("EVALUATE",args,null);
-   if (IvyXml.isElement(xml,"RESULT")) {
-      Element root = getManager().waitForEvaluation(eid); 
-      Element v = IvyXml.getChild(root,"EVAL");
-      Element v1 = IvyXml.getChild(v,"VALUE");
-      String assoc = expr;
-      if (args.get("SAVEID") != null) {
-	 assoc = "*" + args.get("SAVEID").toString();
-       }
-      DiruntimeValueData svd = new DiruntimeValueData(this,v1,assoc);
-      svd = getUniqueValue(svd);
-      return svd.getDiadValue(); 
+   return svd.getDiadValue(); 
+}
+
+
+@Override public List<DiadValue> evaluate(List<String> exprs)
+{
+   List<DiadValue> rslt = new ArrayList<>();
+   for (DiruntimeValueData svd : evaluateExprs(exprs)) {
+      if (svd == null) rslt.add(null);
+      else rslt.add(svd.getDiadValue());
     }
-   return null;
+   
+   return rslt;
 }
 
 
@@ -401,32 +405,66 @@ Element evaluateFields(String expr)
 
 DiruntimeValueData evaluateExpr(String expr)
 {
-   String eid = "DIAD_E_" + eval_counter.incrementAndGet();
-   // expr = "edu.brown.cs.seede.poppy.PoppyValue.register(" + expr + ")";
+   List<DiruntimeValueData> rslt = evaluateExprs(Collections.singletonList(expr));
+   
+   return rslt.get(0);
+}
+
+
+/********************************************************************************/
+/*                                                                              */
+/*      Batch evaluation methods                                                */
+/*                                                                              */
+/********************************************************************************/
+
+List<DiruntimeValueData> evaluateExprs(List<String> exprs)
+{
+   // send all the EVALUATE requests before waiting for any of the replies
+   
+   List<DiruntimeValueData> rslt = new ArrayList<>();
+   if (exprs.isEmpty()) return rslt;
    
    DiadStackFrame frm = getStack().getUserFrame();
    String proj = getManager().findProjectForFile(frm.getSourceFile());  
    
-   CommandArgs args = new CommandArgs("THREAD",thread_id,
-	 "FRAME",frm.getFrameId(),"BREAK",false,"EXPR",expr,
-         "IMPLICIT",true,
-         "PROJECT",proj,
-	 "LEVEL",3,"ARRAY",-1,"REPLYID",eid);
-   args.put("SAVEID",eid);
-   Element xml = getManager().sendBubblesMessage("EVALUATE",args,null);
-   if (IvyXml.isElement(xml,"RESULT")) {
-      Element root = getManager().waitForEvaluation(eid);
+   List<String> eids = new ArrayList<>();
+   List<CompletableFuture<Element>> sends = new ArrayList<>();
+   for (String expr : exprs) {
+      String eid = "DIAD_E_" + eval_counter.incrementAndGet();
+      // expr = "edu.brown.cs.seede.poppy.PoppyValue.register(" + expr + ")";
+      CommandArgs args = new CommandArgs("THREAD",thread_id,
+            "FRAME",frm.getFrameId(),"BREAK",false,"EXPR",expr,
+            "IMPLICIT",true,
+            "PROJECT",proj,
+            "LEVEL",3,"ARRAY",-1,"REPLYID",eid);
+      args.put("SAVEID",eid);
+      eids.add(eid);
+      sends.add(getManager().sendBubblesMessageAsync("EVALUATE",args,null));
+    }
+   
+   List<String> waits = new ArrayList<>();
+   for (int i = 0; i < eids.size(); ++i) {
+      Element xml = getManager().waitForReply(sends.get(i));
+      if (IvyXml.isElement(xml,"RESULT")) waits.add(eids.get(i));
+    }
+   
+   Map<String,Element> evals = getManager().waitForEvaluations(waits);
+   
+   for (String eid : eids) {
+      Element root = evals.get(eid);
+      if (root == null) {
+         rslt.add(null);
+         continue;
+       }
       Element v = IvyXml.getChild(root,"EVAL");
       Element v1 = IvyXml.getChild(v,"VALUE");
-      String assoc = expr;
-      if (args.get("SAVEID") != null) {
-	 assoc = "*" + args.get("SAVEID").toString();
-       }
+      String assoc = "*" + eid;
       DiruntimeValueData svd = new DiruntimeValueData(this,v1,assoc);
       svd = getUniqueValue(svd);
-      return svd;
+      rslt.add(svd);
     }
-   return null;
+   
+   return rslt;
 }
 
 
@@ -24,7 +24,9 @@ package edu.brown.cs.diad.disource;
 
 import java.io.File;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.w3c.dom.Element;
@@ -111,10 +113,16 @@ private void buildProjectMap()
    default_project = null;
    
    Element xml = diad_control.sendBubblesMessage("PROJECTS",null,null);
+   Map<String,CompletableFuture<Element>> waits = new LinkedHashMap<>();
    for (Element p : IvyXml.children(xml,"PROJECT")) {
       String nm = IvyXml.getAttrString(p,"NAME");
       CommandArgs args = new CommandArgs("PROJECT",nm,"FILES",true);
-      Element pxml = diad_control.sendBubblesMessage("OPENPROJECT",args,null);
+      waits.put(nm,diad_control.sendBubblesMessageAsync("OPENPROJECT",args,null));
+    }
+   
+   for (Map.Entry<String,CompletableFuture<Element>> ent : waits.entrySet()) {
+      String nm = ent.getKey();
+      Element pxml = diad_control.waitForReply(ent.getValue());
       Element rxml = IvyXml.getChild(pxml,"PROJECT");
       Element files = IvyXml.getChild(rxml,"FILES");
       for (Element fxml : IvyXml.children(files,"FILE")) {
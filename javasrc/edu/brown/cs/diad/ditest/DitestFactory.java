@@ -127,6 +127,11 @@ public void setupBedrock(String workspace,String mint)
    ec2 = new File(ec2,workspace);
    
    diad_control.setupMessageServer(mint); 
+   if (diad_control.isReplaying()) {
+      // the recorded session stands in for eclipse, FAIT and SEEDE
+      diad_control.startMessageServer();
+      return;
+    }
    
    String cmd = ec1.getAbsolutePath();
    cmd += " -application edu.brown.cs.bubbles.bedrock.application";
@@ -149,7 +154,7 @@ public void setupBedrock(String workspace,String mint)
 	    diad_control.sendBubblesMessage("ENTER",null,null);
             startFait();
             startSeede();
-            diad_control.bubblesReady(); 
+            diad_control.startMessageServer(); 
 	    return;
 	  }
 	 if (i == 0) {
@@ -175,6 +180,7 @@ public void setupBedrock(String workspace,String mint)
 
 public boolean startFait()
 {
+   if (diad_control.isReplaying()) return false;
    if (fait_starting) return false;
    fait_starting = true;
    
@@ -327,6 +333,7 @@ private File getDropinDirectory()
 
 public boolean startSeede()
 {
+   if (diad_control.isReplaying()) return false;
    if (seede_starting) return false;
    seede_starting = true;
    